@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.schema.AvroName;
+import com.github.dariobalinzo.schema.FieldNameConverter;
+import com.github.dariobalinzo.schema.NopNameConverter;
+import com.github.dariobalinzo.schema.SchemaConverter;
+import com.github.dariobalinzo.schema.StructConverter;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a document to a connect schema and struct, as done by the task for every record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({DocumentCorpus.FLAT, DocumentCorpus.WIDE, DocumentCorpus.NESTED, DocumentCorpus.OBJECT_LIST,
+            DocumentCorpus.GENERATED})
+    public String shape;
+
+    @Param({"avro", "nop"})
+    public String fieldNameConverter;
+
+    private Map<String, Object> document;
+    private SchemaConverter schemaConverter;
+    private StructConverter structConverter;
+    private Schema schema;
+
+    @Setup
+    public void setup() {
+        FieldNameConverter converter = "avro".equals(fieldNameConverter) ? new AvroName() : new NopNameConverter();
+        schemaConverter = new SchemaConverter(converter);
+        structConverter = new StructConverter(converter);
+        document = DocumentCorpus.create(shape);
+        schema = schemaConverter.convert(document, "benchmark");
+    }
+
+    @Benchmark
+    public Schema schema() {
+        return schemaConverter.convert(document, "benchmark");
+    }
+
+    @Benchmark
+    public Struct struct() {
+        return structConverter.convert(document, schema);
+    }
+
+    @Benchmark
+    public Struct schemaAndStruct() {
+        return structConverter.convert(document, schemaConverter.convert(document, "benchmark"));
+    }
+}
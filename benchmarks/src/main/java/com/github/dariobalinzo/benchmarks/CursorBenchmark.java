@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.elastic.CursorField;
+import com.github.dariobalinzo.elastic.response.Cursor;
+import com.github.dariobalinzo.task.OffsetSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per record cursor work of the task: reading the cursor values and building the record offset and key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CursorBenchmark {
+    private static final Map<String, String> PARTITION = Collections.singletonMap("index", "benchmark-index");
+
+    private final CursorField topLevelField = new CursorField("ts");
+    private final CursorField keywordField = new CursorField("fullName.keyword");
+    private final CursorField nestedField = new CursorField("level1.level2.level3.value");
+    private final OffsetSerializer offsetSerializer = new OffsetSerializer();
+    private final Cursor cursor = new Cursor("1600000123456");
+    private final Cursor secondaryCursor = new Cursor("1600000123456", "customer-42");
+
+    private Map<String, Object> flatDocument;
+    private Map<String, Object> nestedDocument;
+    private Map<String, Object> offset;
+
+    @Setup
+    public void setup() {
+        flatDocument = DocumentCorpus.create(DocumentCorpus.FLAT);
+        nestedDocument = DocumentCorpus.create(DocumentCorpus.NESTED);
+        offset = new HashMap<>(offsetSerializer.toMapOffset(secondaryCursor));
+    }
+
+    @Benchmark
+    public String readTopLevel() {
+        return topLevelField.read(flatDocument);
+    }
+
+    @Benchmark
+    public String readKeyword() {
+        return keywordField.read(flatDocument);
+    }
+
+    @Benchmark
+    public String readNested() {
+        return nestedField.read(nestedDocument);
+    }
+
+    @Benchmark
+    public Map<String, String> toMapOffset() {
+        return offsetSerializer.toMapOffset(cursor);
+    }
+
+    @Benchmark
+    public Map<String, String> toMapOffsetSecondary() {
+        return offsetSerializer.toMapOffset(secondaryCursor);
+    }
+
+    @Benchmark
+    public String toStringOffset() {
+        return offsetSerializer.toStringOffset("benchmark-index", secondaryCursor);
+    }
+
+    @Benchmark
+    public String toStringOffsetFromDocument() {
+        return offsetSerializer.toStringOffset(topLevelField, keywordField, "benchmark-index", flatDocument);
+    }
+
+    @Benchmark
+    public Cursor toCursor() {
+        return offsetSerializer.toCursor(PARTITION, offset);
+    }
+}
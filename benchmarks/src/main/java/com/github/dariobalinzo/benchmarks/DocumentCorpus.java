@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.corpus.DocumentGenerator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Documents shaped like the sources parsed by the elasticsearch client (LinkedHashMap, ArrayList, Integer, Long,
+ * Double, String and Boolean values), generated from a fixed seed so that every run measures the same data.
+ * All the shapes share the ts and fullName fields, used as cursors and by the filters. The generated shape mixes
+ * nested objects, lists and names that are not valid in avro, as produced by {@link DocumentGenerator}.
+ */
+public final class DocumentCorpus {
+    public static final String FLAT = "flat";
+    public static final String WIDE = "wide";
+    public static final String NESTED = "nested";
+    public static final String OBJECT_LIST = "objectList";
+    public static final String GENERATED = "generated";
+
+    private static final int WIDE_FIELDS = 200;
+    private static final int NESTING_DEPTH = 8;
+    private static final int LIST_SIZE = 50;
+    private static final long SEED = 42;
+
+    private DocumentCorpus() {
+    }
+
+    public static Map<String, Object> create(String shape) {
+        Random random = new Random(SEED);
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("ts", 1_600_000_000_000L + random.nextInt(1_000_000));
+        document.put("fullName", "customer-" + random.nextInt(10_000));
+        switch (shape) {
+            case FLAT:
+                addScalars(document, random);
+                break;
+            case WIDE:
+                for (int i = 0; i < WIDE_FIELDS; i++) {
+                    document.put("field_" + i, scalar(i, random));
+                }
+                break;
+            case NESTED:
+                addScalars(document, random);
+                Map<String, Object> level = document;
+                for (int depth = 1; depth <= NESTING_DEPTH; depth++) {
+                    Map<String, Object> child = new LinkedHashMap<>();
+                    child.put("value", random.nextInt(1000));
+                    child.put("label", "level-" + depth);
+                    child.put("enabled", random.nextBoolean());
+                    level.put("level" + depth, child);
+                    level = child;
+                }
+                break;
+            case OBJECT_LIST:
+                addScalars(document, random);
+                List<Object> orders = new ArrayList<>();
+                for (int i = 0; i < LIST_SIZE; i++) {
+                    Map<String, Object> order = new LinkedHashMap<>();
+                    order.put("id", i);
+                    order.put("sku", "sku-" + random.nextInt(100_000));
+                    order.put("qty", random.nextInt(20));
+                    order.put("price", random.nextInt(100_000) / 100.0);
+                    orders.add(order);
+                }
+                document.put("orders", orders);
+                break;
+            case GENERATED:
+                DocumentGenerator generator = DocumentGenerator.builder(SEED)
+                        .withFieldCount(10, 30)
+                        .withExoticNameRate(0.2)
+                        .build();
+                document.putAll(generator.document(1));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown document shape " + shape);
+        }
+        return document;
+    }
+
+    private static void addScalars(Map<String, Object> document, Random random) {
+        document.put("status", random.nextBoolean() ? "ACTIVE" : "SUSPENDED");
+        document.put("amount", random.nextInt(1_000_000) / 100.0);
+        document.put("count", random.nextInt(1000));
+        document.put("active", random.nextBoolean());
+        document.put("@timestamp", "2020-09-13T12:26:40.000Z");
+        for (int i = 0; i < 5; i++) {
+            document.put("tag_" + i, "tag-" + random.nextInt(100));
+        }
+    }
+
+    private static Object scalar(int i, Random random) {
+        switch (i % 4) {
+            case 0:
+                return "value-" + random.nextInt(10_000);
+            case 1:
+                return random.nextInt(10_000);
+            case 2:
+                return random.nextInt(1_000_000) / 100.0;
+            default:
+                return random.nextBoolean();
+        }
+    }
+
+    /**
+     * Copy of a document, for the operations that modify it in place.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> deepCopy(Map<String, Object> document) {
+        Map<String, Object> copy = new LinkedHashMap<>(document.size() * 2);
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return deepCopy((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(copyValue(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
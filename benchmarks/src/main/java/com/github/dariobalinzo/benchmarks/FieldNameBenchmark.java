@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.schema.AvroName;
+import com.github.dariobalinzo.schema.NopNameConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field name conversion, called for each field of each document (and prefix) by the schema converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldNameBenchmark {
+
+    //valid avro names, names needing a rewrite and a nested path prefix
+    private static final String[] NAMES = {
+            "fullName", "field_42", "@timestamp", "es-index", "order.qty", "1st-item", "customer name"
+    };
+
+    private final AvroName avroName = new AvroName();
+    private final NopNameConverter nopName = new NopNameConverter();
+
+    @Benchmark
+    public void avro(Blackhole blackhole) {
+        for (String name : NAMES) {
+            blackhole.consume(avroName.from(name));
+            blackhole.consume(avroName.from("customer.", name));
+        }
+    }
+
+    @Benchmark
+    public void nop(Blackhole blackhole) {
+        for (String name : NAMES) {
+            blackhole.consume(nopName.from(name));
+            blackhole.consume(nopName.from("customer.", name));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.filter.BlacklistFilter;
+import com.github.dariobalinzo.filter.DocumentFilter;
+import com.github.dariobalinzo.filter.JsonCastFilter;
+import com.github.dariobalinzo.filter.WhitelistFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The document filters modify the document in place: each invocation filters a fresh copy, whose cost alone
+ * is measured by the copy benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({DocumentCorpus.FLAT, DocumentCorpus.WIDE, DocumentCorpus.NESTED, DocumentCorpus.OBJECT_LIST})
+    public String shape;
+
+    private Map<String, Object> document;
+    private DocumentFilter whitelist;
+    private DocumentFilter blacklist;
+    private DocumentFilter jsonCast;
+
+    @Setup
+    public void setup() {
+        document = DocumentCorpus.create(shape);
+        whitelist = new WhitelistFilter(new HashSet<>(Arrays.asList(
+                "ts", "fullName", "field_1", "orders.qty", "level1.level2.value"
+        )));
+        blacklist = new BlacklistFilter(new HashSet<>(Arrays.asList(
+                "status", "field_2", "orders.sku", "level1.level2.label"
+        )));
+        jsonCast = new JsonCastFilter(new HashSet<>(Arrays.asList(
+                "orders", "level1.level2", "field_3"
+        )));
+    }
+
+    @Benchmark
+    public Map<String, Object> copy() {
+        return DocumentCorpus.deepCopy(document);
+    }
+
+    @Benchmark
+    public Map<String, Object> whitelist() {
+        return filter(whitelist);
+    }
+
+    @Benchmark
+    public Map<String, Object> blacklist() {
+        return filter(blacklist);
+    }
+
+    @Benchmark
+    public Map<String, Object> jsonCast() {
+        return filter(jsonCast);
+    }
+
+    private Map<String, Object> filter(DocumentFilter filter) {
+        Map<String, Object> copy = DocumentCorpus.deepCopy(document);
+        filter.filter(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.github.dariobalinzo.ElasticSourceConnectorConfig;
+import com.github.dariobalinzo.corpus.DocumentGenerator;
+import com.github.dariobalinzo.task.ElasticSourceTask;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end throughput of {@link ElasticSourceTask#poll()} against {@link StubElasticsearch}, without network
+ * nor docker. Arguments are key=value pairs:
+ * <ul>
+ * <li>indices: number of indices read by the task (default 1)</li>
+ * <li>pageSize: batch.max.rows of the task (default 1000)</li>
+ * <li>docBytes: approximate source size of each document (default 1024)</li>
+ * <li>generated: serve the documents of a {@link DocumentGenerator} instead of fixed ones (default false)</li>
+ * <li>seed: seed of the generated documents (default 42)</li>
+ * <li>latencyMs: delay added by the stub to each search (default 0)</li>
+ * <li>warmupSec, durationSec: warmup and measured time (default 10 and 30)</li>
+ * <li>any other key is passed to the task as a connector setting (e.g. fetch.lean=true)</li>
+ * </ul>
+ * The stub applies filter_path and the requested response format itself, in the same process: with a single cpu its
+ * work is part of the measured time.
+ */
+public class PollThroughput {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("indices", "1");
+        options.put("pageSize", "1000");
+        options.put("docBytes", "1024");
+        options.put("generated", "false");
+        options.put("seed", "42");
+        options.put("latencyMs", "0");
+        options.put("warmupSec", "10");
+        options.put("durationSec", "30");
+        Map<String, String> taskSettings = new HashMap<>();
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("expected key=value, found " + arg);
+            }
+            if (options.containsKey(keyValue[0])) {
+                options.put(keyValue[0], keyValue[1]);
+            } else {
+                taskSettings.put(keyValue[0], keyValue[1]);
+            }
+        }
+
+        List<String> indices = new ArrayList<>();
+        for (int i = 0; i < Integer.parseInt(options.get("indices")); i++) {
+            indices.add("stub-index-" + i);
+        }
+
+        try (StubElasticsearch elastic = stub(indices, options)) {
+            Map<String, String> settings = new HashMap<>();
+            settings.put(ElasticSourceConnectorConfig.ES_HOST_CONF, "localhost");
+            settings.put(ElasticSourceConnectorConfig.ES_PORT_CONF, String.valueOf(elastic.getPort()));
+            settings.put(ElasticSourceConnectorConfig.INDICES_CONFIG, String.join(",", indices));
+            settings.put(ElasticSourceConnectorConfig.TOPIC_PREFIX_CONFIG, "stub_");
+            settings.put(ElasticSourceConnectorConfig.INCREMENTING_FIELD_NAME_CONFIG, "ts");
+            settings.put(ElasticSourceConnectorConfig.BATCH_MAX_ROWS_CONFIG, options.get("pageSize"));
+            settings.put(ElasticSourceConnectorConfig.POLL_INTERVAL_MS_CONFIG, "10");
+            settings.putAll(taskSettings);
+
+            ElasticSourceTask task = new ElasticSourceTask();
+            task.initialize(new EmptyContext(settings));
+            task.start(settings);
+            try {
+                run(task, elastic, TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmupSec"))), "warmup");
+                run(task, elastic, TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("durationSec"))), "result");
+            } finally {
+                task.stop();
+            }
+        }
+    }
+
+    private static StubElasticsearch stub(List<String> indices, Map<String, String> options) throws IOException {
+        long latencyMs = Long.parseLong(options.get("latencyMs"));
+        if (Boolean.parseBoolean(options.get("generated"))) {
+            DocumentGenerator generator = DocumentGenerator.builder(Long.parseLong(options.get("seed"))).build();
+            return new StubElasticsearch(indices, generator, latencyMs);
+        }
+        return new StubElasticsearch(indices, Integer.parseInt(options.get("docBytes")), latencyMs);
+    }
+
+    private static void run(ElasticSourceTask task, StubElasticsearch elastic, long durationNanos, String label)
+            throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long startBytes = elastic.getResponseBytes();
+        long startAllocated = allocatedBytes(threads);
+        long startGcCount = gcCount();
+        long startGcTime = gcTime();
+        List<Long> pollNanos = new ArrayList<>();
+        long records = 0;
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long now = start;
+        while (now < end) {
+            List<SourceRecord> polled = task.poll();
+            long polledAt = System.nanoTime();
+            pollNanos.add(polledAt - now);
+            records += polled == null ? 0 : polled.size();
+            now = polledAt;
+        }
+        double seconds = (now - start) / 1e9;
+
+        Collections.sort(pollNanos);
+        long allocated = allocatedBytes(threads) - startAllocated;
+        System.out.printf("%s: %d polls, %d records in %.1f s%n", label, pollNanos.size(), records, seconds);
+        System.out.printf("  records/sec: %.0f%n", records / seconds);
+        System.out.printf("  response MB/sec: %.2f%n", (elastic.getResponseBytes() - startBytes) / seconds / 1e6);
+        System.out.printf("  poll latency p50: %.2f ms, p99: %.2f ms, max: %.2f ms%n",
+                percentile(pollNanos, 50) / 1e6, percentile(pollNanos, 99) / 1e6,
+                pollNanos.get(pollNanos.size() - 1) / 1e6);
+        System.out.printf("  poll thread allocation: %.0f bytes/record%n", records == 0 ? 0.0 : (double) allocated / records);
+        System.out.printf("  gc: %d collections, %d ms%n", gcCount() - startGcCount, gcTime() - startGcTime);
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    //allocations of the poll thread only: the stub server threads allocate in the same jvm
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    //no stored offsets: every index is read from the beginning
+    private static class EmptyContext implements SourceTaskContext {
+        private final Map<String, String> configs;
+
+        EmptyContext(Map<String, String> configs) {
+            this.configs = configs;
+        }
+
+        @Override
+        public Map<String, String> configs() {
+            return configs;
+        }
+
+        @Override
+        public OffsetStorageReader offsetStorageReader() {
+            return new OffsetStorageReader() {
+                @Override
+                public <T> Map<String, Object> offset(Map<String, T> partition) {
+                    return null;
+                }
+
+                @Override
+                public <T> Map<Map<String, T>, Map<String, Object>> offsets(Collection<Map<String, T>> partitions) {
+                    return Collections.emptyMap();
+                }
+            };
+        }
+    }
+}
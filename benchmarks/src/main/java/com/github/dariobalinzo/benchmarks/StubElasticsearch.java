@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dariobalinzo.corpus.DocumentGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In process http server answering like an elasticsearch 7 node to the requests of the connector: the info and
+ * _cat/indices requests, and the page searches on the ts cursor field. Every index holds an endless sequence of
+ * documents with ts = 1, 2, 3... and _id = ts: a search returns the first "size" documents within the bounds of all
+ * the range queries of its filters (as for a backfill window) and not excluded by an ids query under must_not
+ * (boundary ids). Other clauses are ignored, secondary sort fields are not supported. As a node would, the stub trims
+ * the search response to the filter_path parameter and answers in the format of the Accept header (json, smile or
+ * cbor), so that the options changing them can be compared.
+ * The documents have either a fixed shape with a padding payload, or the shapes of a {@link DocumentGenerator}.
+ */
+public class StubElasticsearch implements AutoCloseable {
+    private static final String VERSION = "7.16.1";
+    private static final int THREADS = 8;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> indices;
+    private final long latencyMs;
+    private final String payload;
+    private final DocumentGenerator generator;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    /**
+     * @param indices       names of the served indices
+     * @param documentBytes approximate size of the source of each document
+     * @param latencyMs     delay added before answering each search
+     */
+    public StubElasticsearch(List<String> indices, int documentBytes, long latencyMs) throws IOException {
+        this(indices, padding(documentBytes), null, latencyMs);
+    }
+
+    /**
+     * @param indices   names of the served indices
+     * @param generator generator of the served documents
+     * @param latencyMs delay added before answering each search
+     */
+    public StubElasticsearch(List<String> indices, DocumentGenerator generator, long latencyMs) throws IOException {
+        this(indices, null, generator, latencyMs);
+    }
+
+    private StubElasticsearch(List<String> indices, String payload, DocumentGenerator generator, long latencyMs)
+            throws IOException {
+        this.indices = indices;
+        this.latencyMs = latencyMs;
+        this.payload = payload;
+        this.generator = generator;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private static String padding(int documentBytes) {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < Math.max(0, documentBytes - 100); i++) {
+            padding.append((char) ('a' + i % 26));
+        }
+        return padding.toString();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/")) {
+                respond(exchange, 200, info());
+            } else if (path.startsWith("/_cat/indices")) {
+                respond(exchange, 200, catIndices());
+            } else if (path.endsWith("/_search")) {
+                String index = path.substring(1, path.length() - "/_search".length());
+                JsonNode body = readBody(exchange);
+                if (latencyMs > 0) {
+                    Thread.sleep(latencyMs);
+                }
+                searches.incrementAndGet();
+                respondSearch(exchange, search(index, body));
+            } else {
+                respond(exchange, 404, "{\"error\":\"no handler for " + path + "\",\"status\":404}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"error\":\"interrupted\",\"status\":503}");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{\"error\":\"" + e.getClass().getSimpleName() + "\",\"status\":500}");
+        }
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return objectMapper.readTree(body);
+        }
+    }
+
+    private String info() {
+        return "{\"name\":\"stub\",\"cluster_name\":\"stub\",\"cluster_uuid\":\"stub\",\"version\":{" +
+                "\"number\":\"" + VERSION + "\",\"build_flavor\":\"default\",\"build_type\":\"tar\"," +
+                "\"build_hash\":\"stub\",\"build_date\":\"2021-12-11T00:29:38.865893768Z\",\"build_snapshot\":false," +
+                "\"lucene_version\":\"8.10.1\",\"minimum_wire_compatibility_version\":\"6.8.0\"," +
+                "\"minimum_index_compatibility_version\":\"6.0.0-beta1\"},\"tagline\":\"You Know, for Search\"}";
+    }
+
+    private String catIndices() {
+        StringBuilder response = new StringBuilder();
+        for (String index : indices) {
+            response.append("green open ").append(index).append(" stub 1 0 0 0 0b 0b\n");
+        }
+        return response.toString();
+    }
+
+    private String search(String index, JsonNode body) {
+        List<Long> matching = matching(body, body.path("size").asInt(10));
+        if (generator != null) {
+            List<Map<String, Object>> documents = new ArrayList<>(matching.size());
+            for (long ts : matching) {
+                documents.add(generator.document(ts));
+            }
+            return generator.searchResponse(index, documents);
+        }
+
+        StringBuilder response = new StringBuilder(matching.size() * (payload.length() + 200) + 200);
+        response.append("{\"took\":1,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":").append(matching.size()).append(",\"relation\":\"gte\"},")
+                .append("\"max_score\":null,\"hits\":[");
+        for (int i = 0; i < matching.size(); i++) {
+            long ts = matching.get(i);
+            if (i > 0) {
+                response.append(',');
+            }
+            response.append("{\"_index\":\"").append(index).append("\",\"_type\":\"_doc\",")
+                    .append("\"_id\":\"").append(ts).append("\",\"_score\":null,")
+                    .append("\"_source\":{\"ts\":").append(ts)
+                    .append(",\"fullName\":\"customer-").append(ts % 1000)
+                    .append("\",\"status\":\"ACTIVE\",\"amount\":").append(ts % 10_000 / 100.0)
+                    .append(",\"nested\":{\"count\":").append(ts % 100).append(",\"enabled\":true}")
+                    .append(",\"payload\":\"").append(payload).append("\"},")
+                    .append("\"sort\":[").append(ts).append("]}");
+        }
+        response.append("]}}");
+        return response.toString();
+    }
+
+    //the cursor values of the first documents within all the range bounds, skipping the excluded ids
+    private List<Long> matching(JsonNode body, int size) {
+        List<JsonNode> ranges = new ArrayList<>();
+        Set<String> excludedIds = new HashSet<>();
+        collectClauses(body.path("query"), false, ranges, excludedIds);
+        long first = 1;
+        long last = Long.MAX_VALUE;
+        for (JsonNode range : ranges) {
+            if (range.hasNonNull("from")) {
+                long from = Long.parseLong(range.get("from").asText());
+                first = Math.max(first, range.path("include_lower").asBoolean(true) ? from : from + 1);
+            }
+            if (range.hasNonNull("to")) {
+                long to = Long.parseLong(range.get("to").asText());
+                last = Math.min(last, range.path("include_upper").asBoolean(true) ? to : to - 1);
+            }
+        }
+        List<Long> matching = new ArrayList<>(size);
+        for (long ts = first; ts <= last && matching.size() < size; ts++) {
+            if (!excludedIds.contains(String.valueOf(ts))) {
+                matching.add(ts);
+            }
+        }
+        return matching;
+    }
+
+    //the range queries of the cursor may be wrapped in bool and constant score queries
+    private void collectClauses(JsonNode node, boolean mustNot, List<JsonNode> ranges, Set<String> excludedIds) {
+        if (node.has("range") && !mustNot) {
+            node.get("range").elements().forEachRemaining(ranges::add);
+        }
+        if (node.has("ids") && mustNot) {
+            node.get("ids").path("values").forEach(id -> excludedIds.add(id.asText()));
+        }
+        node.fields().forEachRemaining(field -> {
+            boolean negated = mustNot || field.getKey().equals("must_not");
+            if (field.getValue().isArray()) {
+                field.getValue().forEach(child -> collectClauses(child, negated, ranges, excludedIds));
+            } else if (field.getValue().isObject()) {
+                collectClauses(field.getValue(), negated, ranges, excludedIds);
+            }
+        });
+    }
+
+    //filter_path and the format are applied while copying the response, as a node does while writing it
+    private void respondSearch(HttpExchange exchange, String json) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        XContentType format = accept == null ? null : XContentType.fromMediaType(accept);
+        if (format == null) {
+            format = XContentType.JSON;
+        }
+        Set<String> filters = filterPath(exchange.getRequestURI().getRawQuery());
+        if (format == XContentType.JSON && filters.isEmpty()) {
+            respond(exchange, 200, json);
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(
+                NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json);
+             XContentBuilder builder = new XContentBuilder(format.xContent(), out, filters)) {
+            parser.nextToken();
+            builder.copyCurrentStructure(parser);
+        }
+        respond(exchange, 200, out.toByteArray(), format.mediaType());
+    }
+
+    private static Set<String> filterPath(String query) throws UnsupportedEncodingException {
+        if (query == null) {
+            return Collections.emptySet();
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("filter_path=")) {
+                String value = URLDecoder.decode(parameter.substring("filter_path=".length()), "UTF-8");
+                return new HashSet<>(Arrays.asList(value.split(",")));
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body.getBytes(StandardCharsets.UTF_8), "application/json; charset=UTF-8");
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] bytes, String contentType) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.getResponseHeaders().add("X-elastic-product", "Elasticsearch");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        responseBytes.addAndGet(bytes.length);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
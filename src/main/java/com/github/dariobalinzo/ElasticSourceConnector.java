@@ -16,6 +16,7 @@
 
 package com.github.dariobalinzo;
 
+import com.github.dariobalinzo.elastic.DataNodeSelector;
 import com.github.dariobalinzo.elastic.ElasticConnection;
 import com.github.dariobalinzo.elastic.ElasticConnectionBuilder;
 import com.github.dariobalinzo.elastic.ElasticRepository;
@@ -25,7 +26,10 @@ import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.connector.Task;
 import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.source.ConnectorTransactionBoundaries;
+import org.apache.kafka.connect.source.ExactlyOnceSupport;
 import org.apache.kafka.connect.source.SourceConnector;
+import org.elasticsearch.client.NodeSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,7 +80,52 @@ public class ElasticSourceConnector extends SourceConnector {
         ElasticConnectionBuilder connectionBuilder = new ElasticConnectionBuilder(esHost, esPort)
                 .withProtocol(esScheme)
                 .withMaxAttempts(maxConnectionAttempts)
-                .withBackoff(connectionRetryBackoff);
+                .withBackoff(connectionRetryBackoff)
+                .withMaxBackoff(Long.parseLong(config.getString(ElasticSourceConnectorConfig.CONNECTION_BACKOFF_MAX_CONFIG)))
+                .withCircuitBreaker(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_CIRCUIT_BREAKER_THRESHOLD_CONFIG)),
+                        Long.parseLong(config.getString(ElasticSourceConnectorConfig.ES_CIRCUIT_BREAKER_OPEN_CONFIG))
+                )
+                .withCompression(Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_COMPRESSION_CONFIG)))
+                .withMaxConnections(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_MAX_CONNECTIONS_PER_ROUTE_CONFIG)),
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_MAX_CONNECTIONS_TOTAL_CONFIG))
+                )
+                .withTimeouts(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_CONNECT_TIMEOUT_CONFIG)),
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SOCKET_TIMEOUT_CONFIG))
+                )
+                .withSharing(Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_CONNECTION_SHARED_CONFIG)));
+
+        String ioThreads = config.getString(ElasticSourceConnectorConfig.ES_IO_THREADS_CONFIG);
+        if (ioThreads != null) {
+            connectionBuilder.withIoThreadCount(Integer.parseInt(ioThreads));
+        }
+
+        String keepAlive = config.getString(ElasticSourceConnectorConfig.ES_KEEPALIVE_CONFIG);
+        if (keepAlive != null) {
+            connectionBuilder.withKeepAlive(Long.parseLong(keepAlive));
+        }
+
+        if (Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_ENABLED_CONFIG))) {
+            connectionBuilder.withSniffer(
+                    Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_INTERVAL_CONFIG)),
+                    Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_FAILURE_DELAY_CONFIG))
+            );
+        }
+
+        switch (config.getString(ElasticSourceConnectorConfig.ES_NODE_SELECTOR_CONFIG)) {
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_DATA:
+                connectionBuilder.withNodeSelector(new DataNodeSelector());
+                break;
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_SKIP_DEDICATED_MASTERS:
+                connectionBuilder.withNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS);
+                break;
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_ANY:
+            default:
+                connectionBuilder.withNodeSelector(NodeSelector.ANY);
+                break;
+        }
 
         String truststore = config.getString(ElasticSourceConnectorConfig.ES_TRUSTSTORE_CONF);
         String truststorePass = config.getString(ElasticSourceConnectorConfig.ES_TRUSTSTORE_PWD_CONF);
@@ -105,6 +154,32 @@ public class ElasticSourceConnector extends SourceConnector {
         indexMonitorThread.start();
     }
 
+    //the offset of each record is its position in the index: re-reading from a committed offset yields the same records
+    @Override
+    public ExactlyOnceSupport exactlyOnceSupport(Map<String, String> connectorConfig) {
+        ElasticSourceConnectorConfig config = new ElasticSourceConnectorConfig(connectorConfig);
+        //the tombstones of the reconciliation have no offset, they depend on the snapshots in the local directory
+        if (Long.parseLong(config.getString(ElasticSourceConnectorConfig.RECONCILIATION_INTERVAL_CONFIG)) > 0) {
+            return ExactlyOnceSupport.UNSUPPORTED;
+        }
+        //with a cursor alone, the documents sharing its last value are not replayed deterministically
+        boolean seqNoMode = ElasticSourceConnectorConfig.MODE_SEQ_NO.equals(
+                config.getString(ElasticSourceConnectorConfig.MODE_CONFIG)
+        );
+        boolean secondarySort = config.getString(ElasticSourceConnectorConfig.SECONDARY_INCREMENTING_FIELD_NAME_CONFIG) != null;
+        int maxBoundaryIds = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.CURSOR_DEDUP_MAX_IDS_CONFIG));
+        if (!seqNoMode && !secondarySort && maxBoundaryIds <= 0) {
+            return ExactlyOnceSupport.UNSUPPORTED;
+        }
+        return ExactlyOnceSupport.SUPPORTED;
+    }
+
+    //the task commits a transaction after each page of documents
+    @Override
+    public ConnectorTransactionBoundaries canDefineTransactionBoundaries(Map<String, String> connectorConfig) {
+        return ConnectorTransactionBoundaries.SUPPORTED;
+    }
+
     @Override
     public Class<? extends Task> taskClass() {
         return ElasticSourceTask.class;
@@ -140,6 +215,8 @@ public class ElasticSourceConnector extends SourceConnector {
             Map<String, String> taskProps = new HashMap<>(configProperties);
             taskProps.put(ElasticSourceConnectorConfig.INDICES_CONFIG,
                     String.join(",", taskIndices));
+            //connect does not tell the task its id, the metrics of the task are tagged with it
+            taskProps.put(ElasticSourceConnectorConfig.TASK_ID_CONFIG, String.valueOf(taskConfigs.size()));
             taskConfigs.add(taskProps);
         }
         return taskConfigs;
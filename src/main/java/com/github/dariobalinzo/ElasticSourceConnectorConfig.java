@@ -16,12 +16,15 @@
 
 package com.github.dariobalinzo;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.config.ConfigDef.Width;
+import org.apache.kafka.common.config.ConfigException;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 
@@ -70,11 +73,119 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
 
     public static final String CONNECTION_BACKOFF_CONFIG = "connection.backoff.ms";
     private static final String CONNECTION_BACKOFF_DOC
-            = "Backoff time in milliseconds between connection attempts.";
+            = "Base backoff time in milliseconds between connection attempts: the backoff grows exponentially " +
+            "with the attempts, with random jitter, up to connection.backoff.max.ms.";
     private static final String CONNECTION_BACKOFF_DISPLAY
             = "Elastic connection backoff in milliseconds";
     private static final String CONNECTION_BACKOFF_DEFAULT = "10000";
 
+    public static final String CONNECTION_BACKOFF_MAX_CONFIG = "connection.backoff.max.ms";
+    private static final String CONNECTION_BACKOFF_MAX_DOC
+            = "Maximum backoff time in milliseconds between connection attempts.";
+    private static final String CONNECTION_BACKOFF_MAX_DISPLAY
+            = "Elastic connection max backoff in milliseconds";
+    private static final String CONNECTION_BACKOFF_MAX_DEFAULT = "60000";
+
+    public static final String ES_CIRCUIT_BREAKER_THRESHOLD_CONFIG = "es.circuit.breaker.threshold";
+    private static final String ES_CIRCUIT_BREAKER_THRESHOLD_DOC = "Number of consecutive failed searches " +
+            "(connection errors, 429 rejections, 502/503/504) after which all the searches to the cluster are paused. " +
+            "0 disables the circuit breaker.";
+    private static final String ES_CIRCUIT_BREAKER_THRESHOLD_DISPLAY = "Circuit breaker failure threshold";
+    private static final String ES_CIRCUIT_BREAKER_THRESHOLD_DEFAULT = "5";
+
+    public static final String ES_CIRCUIT_BREAKER_OPEN_CONFIG = "es.circuit.breaker.open.ms";
+    private static final String ES_CIRCUIT_BREAKER_OPEN_DOC =
+            "Time in milliseconds the searches are paused once the circuit breaker opens.";
+    private static final String ES_CIRCUIT_BREAKER_OPEN_DISPLAY = "Circuit breaker pause (ms)";
+    private static final String ES_CIRCUIT_BREAKER_OPEN_DEFAULT = "30000";
+
+    public static final String ES_COMPRESSION_CONFIG = "es.compression.enabled";
+    private static final String ES_COMPRESSION_DOC =
+            "If true, requests are gzip compressed and compressed (gzip) responses are requested from Elasticsearch.";
+    private static final String ES_COMPRESSION_DISPLAY = "Elasticsearch http compression";
+    private static final String ES_COMPRESSION_DEFAULT = "false";
+
+    public static final String ES_IO_THREADS_CONFIG = "es.io.threads";
+    private static final String ES_IO_THREADS_DOC =
+            "Number of I/O dispatcher threads of the Elasticsearch client (default: number of available processors).";
+    private static final String ES_IO_THREADS_DISPLAY = "Elasticsearch client I/O threads";
+
+    public static final String ES_MAX_CONNECTIONS_PER_ROUTE_CONFIG = "es.connections.max.per.route";
+    private static final String ES_MAX_CONNECTIONS_PER_ROUTE_DOC =
+            "Maximum number of pooled connections to each Elasticsearch host.";
+    private static final String ES_MAX_CONNECTIONS_PER_ROUTE_DISPLAY = "Elasticsearch max connections per host";
+    private static final String ES_MAX_CONNECTIONS_PER_ROUTE_DEFAULT = "10";
+
+    public static final String ES_MAX_CONNECTIONS_TOTAL_CONFIG = "es.connections.max.total";
+    private static final String ES_MAX_CONNECTIONS_TOTAL_DOC =
+            "Maximum number of pooled connections to Elasticsearch.";
+    private static final String ES_MAX_CONNECTIONS_TOTAL_DISPLAY = "Elasticsearch max connections";
+    private static final String ES_MAX_CONNECTIONS_TOTAL_DEFAULT = "30";
+
+    public static final String ES_CONNECT_TIMEOUT_CONFIG = "es.connect.timeout.ms";
+    private static final String ES_CONNECT_TIMEOUT_DOC = "Elasticsearch connection timeout in milliseconds.";
+    private static final String ES_CONNECT_TIMEOUT_DISPLAY = "Elasticsearch connect timeout (ms)";
+    private static final String ES_CONNECT_TIMEOUT_DEFAULT = "1000";
+
+    public static final String ES_SOCKET_TIMEOUT_CONFIG = "es.socket.timeout.ms";
+    private static final String ES_SOCKET_TIMEOUT_DOC = "Elasticsearch socket (read) timeout in milliseconds.";
+    private static final String ES_SOCKET_TIMEOUT_DISPLAY = "Elasticsearch socket timeout (ms)";
+    private static final String ES_SOCKET_TIMEOUT_DEFAULT = "30000";
+
+    public static final String ES_KEEPALIVE_CONFIG = "es.keepalive.ms";
+    private static final String ES_KEEPALIVE_DOC = "Maximum time in milliseconds an idle connection is kept alive " +
+            "(default: as long as allowed by the server).";
+    private static final String ES_KEEPALIVE_DISPLAY = "Elasticsearch connection keep-alive (ms)";
+
+    public static final String ES_CONNECTION_SHARED_CONFIG = "es.connection.shared";
+    private static final String ES_CONNECTION_SHARED_DOC =
+            "If true, connectors and tasks running in the same worker with the same Elasticsearch connection " +
+                    "settings share a single client (threads, connection pool and TLS sessions).";
+    private static final String ES_CONNECTION_SHARED_DISPLAY = "Share Elasticsearch client within the worker";
+    private static final String ES_CONNECTION_SHARED_DEFAULT = "true";
+
+    public static final String ES_SNIFFER_ENABLED_CONFIG = "es.sniffer.enabled";
+    private static final String ES_SNIFFER_ENABLED_DOC =
+            "If true, the cluster nodes are periodically discovered (sniffed) and used instead of the configured hosts.";
+    private static final String ES_SNIFFER_ENABLED_DISPLAY = "Elasticsearch node sniffing";
+    private static final String ES_SNIFFER_ENABLED_DEFAULT = "false";
+
+    public static final String ES_SNIFFER_INTERVAL_CONFIG = "es.sniffer.interval.ms";
+    private static final String ES_SNIFFER_INTERVAL_DOC = "Interval in milliseconds between two node discoveries.";
+    private static final String ES_SNIFFER_INTERVAL_DISPLAY = "Elasticsearch sniffing interval (ms)";
+    private static final String ES_SNIFFER_INTERVAL_DEFAULT = "300000";
+
+    public static final String ES_SNIFFER_FAILURE_DELAY_CONFIG = "es.sniffer.failure.delay.ms";
+    private static final String ES_SNIFFER_FAILURE_DELAY_DOC =
+            "Delay in milliseconds of the node discovery triggered by a node failure.";
+    private static final String ES_SNIFFER_FAILURE_DELAY_DISPLAY = "Elasticsearch sniffing delay after failure (ms)";
+    private static final String ES_SNIFFER_FAILURE_DELAY_DEFAULT = "60000";
+
+    public static final String ES_NODE_SELECTOR_CONFIG = "es.node.selector";
+    private static final String ES_NODE_SELECTOR_DOC = "Nodes receiving the requests: any, skip_dedicated_masters " +
+            "or data (data and coordinating only nodes, skipping dedicated master and ingest nodes).";
+    private static final String ES_NODE_SELECTOR_DISPLAY = "Elasticsearch node selector";
+    public static final String NODE_SELECTOR_ANY = "any";
+    public static final String NODE_SELECTOR_SKIP_DEDICATED_MASTERS = "skip_dedicated_masters";
+    public static final String NODE_SELECTOR_DATA = "data";
+
+    public static final String ES_HEDGING_ENABLED_CONFIG = "es.hedging.enabled";
+    private static final String ES_HEDGING_ENABLED_DOC = "If true, a search still running after the hedging delay " +
+            "is duplicated on another node, and the first response is used.";
+    private static final String ES_HEDGING_ENABLED_DISPLAY = "Hedged searches";
+    private static final String ES_HEDGING_ENABLED_DEFAULT = "false";
+
+    public static final String ES_HEDGING_PERCENTILE_CONFIG = "es.hedging.percentile";
+    private static final String ES_HEDGING_PERCENTILE_DOC =
+            "Percentile of the recent search latencies used as hedging delay.";
+    private static final String ES_HEDGING_PERCENTILE_DISPLAY = "Hedging latency percentile";
+    private static final String ES_HEDGING_PERCENTILE_DEFAULT = "95";
+
+    public static final String ES_HEDGING_MIN_DELAY_CONFIG = "es.hedging.min.delay.ms";
+    private static final String ES_HEDGING_MIN_DELAY_DOC = "Minimum hedging delay in milliseconds.";
+    private static final String ES_HEDGING_MIN_DELAY_DISPLAY = "Minimum hedging delay (ms)";
+    private static final String ES_HEDGING_MIN_DELAY_DEFAULT = "50";
+
     public static final String POLL_INTERVAL_MS_CONFIG = "poll.interval.ms";
     private static final String POLL_INTERVAL_MS_DOC = "Frequency in ms to poll for new data in "
             + "each index.";
@@ -87,11 +198,129 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
     private static final String BATCH_MAX_ROWS_DEFAULT = "10000";
     private static final String BATCH_MAX_ROWS_DISPLAY = "Max Documents Per Batch";
 
+    public static final String POLL_PROBE_ENABLED_CONFIG = "poll.probe.enabled";
+    private static final String POLL_PROBE_ENABLED_DOC =
+            "If true, an index that returned no new data is first probed with a cheap count-only search " +
+                    "(no sorting, no documents fetched), and the full page search is issued only when new data is found.";
+    private static final String POLL_PROBE_ENABLED_DEFAULT = "false";
+    private static final String POLL_PROBE_ENABLED_DISPLAY = "Probe for new data before searching";
+
+    public static final String FETCH_LEAN_CONFIG = "fetch.lean";
+    private static final String FETCH_LEAN_DOC =
+            "If true, page searches disable total hits tracking and scoring, and the search response is trimmed " +
+                    "(filter_path) to the document id, index, source and sort values.";
+    private static final String FETCH_LEAN_DEFAULT = "false";
+    private static final String FETCH_LEAN_DISPLAY = "Lean fetch mode";
+
+    public static final String QUERY_FILTER_CONFIG = "query.filter";
+    private static final String QUERY_FILTER_DOC = "Elasticsearch query (json query DSL, " +
+            "e.g. {\"term\": {\"status\": \"ERROR\"}}) that documents must match to be read. " +
+            "It is added as a filter to every search.";
+    private static final String QUERY_FILTER_DISPLAY = "Query filter";
+
+    public static final String FETCH_DOCVALUE_FIELDS_CONFIG = "fetch.docvalue.fields";
+    private static final String FETCH_DOCVALUE_FIELDS_DOC =
+            "If set, documents are built from the doc values of these fields (e.g. order.qty;order.price;status.keyword) " +
+                    "instead of the source, which is not fetched. The incrementing fields are always included. " +
+                    "Only fields with doc values (numeric, keyword, date, boolean...) can be used.";
+    private static final String FETCH_DOCVALUE_FIELDS_DISPLAY = "Doc values projection";
+
+    public static final String OFFSETS_PER_PAGE_CONFIG = "offsets.per.page";
+    private static final String OFFSETS_PER_PAGE_DOC =
+            "If true, only the last record of each page carries the offset of its own position: the other records " +
+                    "share a single offset, the position at the start of the page. After a restart the last " +
+                    "partially committed page is read again.";
+    private static final String OFFSETS_PER_PAGE_DEFAULT = "false";
+    private static final String OFFSETS_PER_PAGE_DISPLAY = "Offsets at page boundaries only";
+
+    public static final String BACKFILL_WINDOWS_CONFIG = "backfill.windows";
+    private static final String BACKFILL_WINDOWS_DOC =
+            "If greater than 0, an index without a stored offset is first read in this many windows of the " +
+                    "incrementing field range (min/max of the field), read in parallel, before switching to incremental " +
+                    "reads from the max value. The incrementing field must be numeric or a date and " +
+                    "no secondary incrementing field can be used.";
+    private static final String BACKFILL_WINDOWS_DEFAULT = "0";
+    private static final String BACKFILL_WINDOWS_DISPLAY = "Backfill windows";
+
+    public static final String BACKFILL_THREADS_CONFIG = "backfill.threads";
+    private static final String BACKFILL_THREADS_DOC = "Number of threads of each task reading backfill windows.";
+    private static final String BACKFILL_THREADS_DEFAULT = "4";
+    private static final String BACKFILL_THREADS_DISPLAY = "Backfill threads";
+
+    public static final String RECONCILIATION_INTERVAL_CONFIG = "reconciliation.interval.ms";
+    private static final String RECONCILIATION_INTERVAL_DOC =
+            "If greater than 0, every this many milliseconds the keys of all the documents of each index are " +
+                    "compared with the ones of the previous pass, and a tombstone (null value) is sent for each " +
+                    "deleted document. Not available in seq_no mode.";
+    private static final String RECONCILIATION_INTERVAL_DEFAULT = "0";
+    private static final String RECONCILIATION_INTERVAL_DISPLAY = "Deletion reconciliation interval (ms)";
+
+    public static final String RECONCILIATION_DIR_CONFIG = "reconciliation.dir";
+    private static final String RECONCILIATION_DIR_DOC =
+            "Directory where the sorted key snapshots of the reconciliation are stored, in a subdirectory named " +
+                    "after the connector (by default a directory in java.io.tmpdir). It should be persistent and " +
+                    "shared by the workers: snapshots survive restarts and rebalances only if the directory does.";
+    private static final String RECONCILIATION_DIR_DISPLAY = "Deletion reconciliation directory";
+
+    public static final String BACKLOG_INTERVAL_CONFIG = "backlog.interval.ms";
+    private static final String BACKLOG_INTERVAL_DOC =
+            "If greater than 0, every this many milliseconds the backlog of each index (documents after the " +
+                    "current cursor, and their max cursor value) is estimated with one search per index, and exposed as " +
+                    "metrics. Each poll reads the indices furthest behind first, and up to 10 pages instead of one " +
+                    "from the ones still behind. Not available in seq_no mode.";
+    private static final String BACKLOG_INTERVAL_DEFAULT = "0";
+    private static final String BACKLOG_INTERVAL_DISPLAY = "Backlog estimation interval (ms)";
+
+    public static final String BACKLOG_MAX_COUNT_CONFIG = "backlog.max.count";
+    private static final String BACKLOG_MAX_COUNT_DOC =
+            "Documents are counted up to this value when estimating the backlog, larger backlogs are reported as it.";
+    private static final String BACKLOG_MAX_COUNT_DEFAULT = "10000";
+    private static final String BACKLOG_MAX_COUNT_DISPLAY = "Backlog count cap";
+
+    public static final String STAGE_TIMING_SAMPLING_CONFIG = "stage.timing.sampling";
+    private static final String STAGE_TIMING_SAMPLING_DOC =
+            "The filter, schema, struct and record build stages are timed for one document out of this many " +
+                    "(1 times every document, 0 disables them). Index and page stages, and the filter and conversion " +
+                    "time of the task metrics, are always timed.";
+    private static final String STAGE_TIMING_SAMPLING_DEFAULT = "10";
+    private static final String STAGE_TIMING_SAMPLING_DISPLAY = "Stage timing sampling";
+
+    public static final String STAGE_TIMING_LOG_INTERVAL_CONFIG = "stage.timing.log.interval.ms";
+    private static final String STAGE_TIMING_LOG_INTERVAL_DOC =
+            "If greater than 0, every this many milliseconds a line with the timings of each poll stage over the " +
+                    "interval is logged.";
+    private static final String STAGE_TIMING_LOG_INTERVAL_DEFAULT = "0";
+    private static final String STAGE_TIMING_LOG_INTERVAL_DISPLAY = "Stage timing log interval (ms)";
+
+    public static final String PROGRESS_LOG_INTERVAL_CONFIG = "progress.log.interval.ms";
+    private static final String PROGRESS_LOG_INTERVAL_DOC =
+            "Every this many milliseconds a single line with the polls, records, pages and cursor of each index " +
+                    "over the interval is logged at INFO level (0 disables it). Per poll details are logged at DEBUG.";
+    private static final String PROGRESS_LOG_INTERVAL_DEFAULT = "60000";
+    private static final String PROGRESS_LOG_INTERVAL_DISPLAY = "Progress log interval (ms)";
+
+    public static final String ES_RESPONSE_FORMAT_CONFIG = "es.response.format";
+    private static final String ES_RESPONSE_FORMAT_DOC =
+            "Content type requested for search responses: json, smile or cbor. " +
+                    "Binary formats avoid text parsing and are usually smaller for numeric documents.";
+    private static final String ES_RESPONSE_FORMAT_DISPLAY = "Search response format (json, smile, cbor)";
+    public static final String RESPONSE_FORMAT_JSON = "json";
+    public static final String RESPONSE_FORMAT_SMILE = "smile";
+    public static final String RESPONSE_FORMAT_CBOR = "cbor";
+
     private static final String MODE_UNSPECIFIED = "";
     private static final String MODE_BULK = "bulk";
     private static final String MODE_TIMESTAMP = "timestamp";
     private static final String MODE_INCREMENTING = "incrementing";
     private static final String MODE_TIMESTAMP_INCREMENTING = "timestamp+incrementing";
+    public static final String MODE_SEQ_NO = "seq_no";
+
+    public static final String SEQ_NO_VISIBILITY_DELAY_CONFIG = "seq_no.visibility.delay.ms";
+    private static final String SEQ_NO_VISIBILITY_DELAY_DOC = "In seq_no mode, operations are read only up to the " +
+            "shard global checkpoint observed at least this many milliseconds before, so that they are already " +
+            "visible to searches. It should be greater than the index refresh interval.";
+    private static final String SEQ_NO_VISIBILITY_DELAY_DEFAULT = "2000";
+    private static final String SEQ_NO_VISIBILITY_DELAY_DISPLAY = "Seq no visibility delay (ms)";
 
     public static final String INCREMENTING_FIELD_NAME_CONFIG = "incrementing.field.name";
     private static final String INCREMENTING_FIELD_NAME_DOC =
@@ -105,6 +334,21 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
                     " in order to avoid data losses when paginating";
     private static final String SECONDARY_INCREMENTING_FIELD_NAME_DISPLAY = "Secondary Incrementing Field Name";
 
+    public static final String CURSOR_SETTLE_CONFIG = "cursor.settle.ms";
+    private static final String CURSOR_SETTLE_DOC = "If greater than 0, only documents with an incrementing field " +
+            "value older than now minus this many milliseconds are read, so that documents made visible by a later " +
+            "refresh are not skipped. The incrementing field must be a date.";
+    private static final String CURSOR_SETTLE_DEFAULT = "0";
+    private static final String CURSOR_SETTLE_DISPLAY = "Cursor settle window (ms)";
+
+    public static final String CURSOR_DEDUP_MAX_IDS_CONFIG = "cursor.dedup.max.ids";
+    private static final String CURSOR_DEDUP_MAX_IDS_DOC = "If greater than 0 and no secondary incrementing field " +
+            "is set, the ids of the documents read with the last cursor value (up to this many) are stored in the " +
+            "offset, and the next search includes the cursor value excluding only those documents, so documents " +
+            "sharing a cursor value across two pages are not lost.";
+    private static final String CURSOR_DEDUP_MAX_IDS_DEFAULT = "0";
+    private static final String CURSOR_DEDUP_MAX_IDS_DISPLAY = "Max ids kept for the last cursor value";
+
     public static final String INDEX_PREFIX_CONFIG = "index.prefix";
     private static final String INDEX_PREFIX_DOC = "List of indices to include in copying.";
     private static final String INDEX_PREFIX_DEFAULT = "";
@@ -125,11 +369,13 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
     private static final String MODE_GROUP = "Mode";
     private static final String CONNECTOR_GROUP = "Connector";
 
-    private static final String MODE_CONFIG = "mode";
-    private static final String MODE_DOC = "";
+    public static final String MODE_CONFIG = "mode";
+    private static final String MODE_DOC = "Use seq_no to read every index/update operation in shard order, tracking " +
+            "the per shard sequence number instead of the incrementing field. Other values use the incrementing field.";
     private static final String MODE_DISPLAY = "Index Incrementing field";
 
     public static final String INDICES_CONFIG = "es.indices";
+    public static final String TASK_ID_CONFIG = "es.task.id";
 
     public static final String FIELDS_WHITELIST_CONFIG = "filters.whitelist";
     private static final String FIELDS_WHITELIST_DOC = "Whitelist filter for fields (e.g. order.qty;order.price;status )";
@@ -272,6 +518,191 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
                 ++orderInGroup,
                 Width.SHORT,
                 CONNECTION_BACKOFF_DISPLAY
+        ).define(
+                CONNECTION_BACKOFF_MAX_CONFIG,
+                Type.STRING,
+                CONNECTION_BACKOFF_MAX_DEFAULT,
+                Importance.LOW,
+                CONNECTION_BACKOFF_MAX_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                CONNECTION_BACKOFF_MAX_DISPLAY
+        ).define(
+                ES_CIRCUIT_BREAKER_THRESHOLD_CONFIG,
+                Type.STRING,
+                ES_CIRCUIT_BREAKER_THRESHOLD_DEFAULT,
+                Importance.LOW,
+                ES_CIRCUIT_BREAKER_THRESHOLD_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_CIRCUIT_BREAKER_THRESHOLD_DISPLAY
+        ).define(
+                ES_CIRCUIT_BREAKER_OPEN_CONFIG,
+                Type.STRING,
+                ES_CIRCUIT_BREAKER_OPEN_DEFAULT,
+                Importance.LOW,
+                ES_CIRCUIT_BREAKER_OPEN_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_CIRCUIT_BREAKER_OPEN_DISPLAY
+        ).define(
+                ES_COMPRESSION_CONFIG,
+                Type.STRING,
+                ES_COMPRESSION_DEFAULT,
+                Importance.LOW,
+                ES_COMPRESSION_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_COMPRESSION_DISPLAY
+        ).define(
+                ES_IO_THREADS_CONFIG,
+                Type.STRING,
+                null,
+                Importance.LOW,
+                ES_IO_THREADS_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_IO_THREADS_DISPLAY
+        ).define(
+                ES_MAX_CONNECTIONS_PER_ROUTE_CONFIG,
+                Type.STRING,
+                ES_MAX_CONNECTIONS_PER_ROUTE_DEFAULT,
+                Importance.LOW,
+                ES_MAX_CONNECTIONS_PER_ROUTE_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_MAX_CONNECTIONS_PER_ROUTE_DISPLAY
+        ).define(
+                ES_MAX_CONNECTIONS_TOTAL_CONFIG,
+                Type.STRING,
+                ES_MAX_CONNECTIONS_TOTAL_DEFAULT,
+                Importance.LOW,
+                ES_MAX_CONNECTIONS_TOTAL_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_MAX_CONNECTIONS_TOTAL_DISPLAY
+        ).define(
+                ES_CONNECT_TIMEOUT_CONFIG,
+                Type.STRING,
+                ES_CONNECT_TIMEOUT_DEFAULT,
+                Importance.LOW,
+                ES_CONNECT_TIMEOUT_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_CONNECT_TIMEOUT_DISPLAY
+        ).define(
+                ES_SOCKET_TIMEOUT_CONFIG,
+                Type.STRING,
+                ES_SOCKET_TIMEOUT_DEFAULT,
+                Importance.LOW,
+                ES_SOCKET_TIMEOUT_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_SOCKET_TIMEOUT_DISPLAY
+        ).define(
+                ES_KEEPALIVE_CONFIG,
+                Type.STRING,
+                null,
+                Importance.LOW,
+                ES_KEEPALIVE_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_KEEPALIVE_DISPLAY
+        ).define(
+                ES_CONNECTION_SHARED_CONFIG,
+                Type.STRING,
+                ES_CONNECTION_SHARED_DEFAULT,
+                Importance.LOW,
+                ES_CONNECTION_SHARED_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_CONNECTION_SHARED_DISPLAY
+        ).define(
+                ES_SNIFFER_ENABLED_CONFIG,
+                Type.STRING,
+                ES_SNIFFER_ENABLED_DEFAULT,
+                Importance.LOW,
+                ES_SNIFFER_ENABLED_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_SNIFFER_ENABLED_DISPLAY
+        ).define(
+                ES_SNIFFER_INTERVAL_CONFIG,
+                Type.STRING,
+                ES_SNIFFER_INTERVAL_DEFAULT,
+                Importance.LOW,
+                ES_SNIFFER_INTERVAL_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_SNIFFER_INTERVAL_DISPLAY
+        ).define(
+                ES_SNIFFER_FAILURE_DELAY_CONFIG,
+                Type.STRING,
+                ES_SNIFFER_FAILURE_DELAY_DEFAULT,
+                Importance.LOW,
+                ES_SNIFFER_FAILURE_DELAY_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_SNIFFER_FAILURE_DELAY_DISPLAY
+        ).define(
+                ES_NODE_SELECTOR_CONFIG,
+                Type.STRING,
+                NODE_SELECTOR_ANY,
+                ConfigDef.ValidString.in(
+                        NODE_SELECTOR_ANY,
+                        NODE_SELECTOR_SKIP_DEDICATED_MASTERS,
+                        NODE_SELECTOR_DATA
+                ),
+                Importance.LOW,
+                ES_NODE_SELECTOR_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_NODE_SELECTOR_DISPLAY
+        ).define(
+                ES_HEDGING_ENABLED_CONFIG,
+                Type.STRING,
+                ES_HEDGING_ENABLED_DEFAULT,
+                Importance.LOW,
+                ES_HEDGING_ENABLED_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_HEDGING_ENABLED_DISPLAY
+        ).define(
+                ES_HEDGING_PERCENTILE_CONFIG,
+                Type.STRING,
+                ES_HEDGING_PERCENTILE_DEFAULT,
+                Importance.LOW,
+                ES_HEDGING_PERCENTILE_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_HEDGING_PERCENTILE_DISPLAY
+        ).define(
+                ES_HEDGING_MIN_DELAY_CONFIG,
+                Type.STRING,
+                ES_HEDGING_MIN_DELAY_DEFAULT,
+                Importance.LOW,
+                ES_HEDGING_MIN_DELAY_DOC,
+                DATABASE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_HEDGING_MIN_DELAY_DISPLAY
         ).define(
                 INDEX_PREFIX_CONFIG,
                 Type.STRING,
@@ -336,7 +767,8 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
                         MODE_BULK,
                         MODE_TIMESTAMP,
                         MODE_INCREMENTING,
-                        MODE_TIMESTAMP_INCREMENTING
+                        MODE_TIMESTAMP_INCREMENTING,
+                        MODE_SEQ_NO
                 ),
                 Importance.HIGH,
                 MODE_DOC,
@@ -367,6 +799,36 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
                 ++orderInGroup,
                 Width.MEDIUM,
                 SECONDARY_INCREMENTING_FIELD_NAME_DISPLAY
+        ).define(
+                CURSOR_SETTLE_CONFIG,
+                Type.STRING,
+                CURSOR_SETTLE_DEFAULT,
+                Importance.LOW,
+                CURSOR_SETTLE_DOC,
+                MODE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                CURSOR_SETTLE_DISPLAY
+        ).define(
+                CURSOR_DEDUP_MAX_IDS_CONFIG,
+                Type.STRING,
+                CURSOR_DEDUP_MAX_IDS_DEFAULT,
+                Importance.LOW,
+                CURSOR_DEDUP_MAX_IDS_DOC,
+                MODE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                CURSOR_DEDUP_MAX_IDS_DISPLAY
+        ).define(
+                SEQ_NO_VISIBILITY_DELAY_CONFIG,
+                Type.STRING,
+                SEQ_NO_VISIBILITY_DELAY_DEFAULT,
+                Importance.LOW,
+                SEQ_NO_VISIBILITY_DELAY_DOC,
+                MODE_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                SEQ_NO_VISIBILITY_DELAY_DISPLAY
         );
     }
 
@@ -392,6 +854,173 @@ public class ElasticSourceConnectorConfig extends AbstractConfig {
                 ++orderInGroup,
                 Width.SHORT,
                 BATCH_MAX_ROWS_DISPLAY
+        ).define(
+                POLL_PROBE_ENABLED_CONFIG,
+                Type.STRING,
+                POLL_PROBE_ENABLED_DEFAULT,
+                Importance.LOW,
+                POLL_PROBE_ENABLED_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                POLL_PROBE_ENABLED_DISPLAY
+        ).define(
+                FETCH_LEAN_CONFIG,
+                Type.STRING,
+                FETCH_LEAN_DEFAULT,
+                Importance.LOW,
+                FETCH_LEAN_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                FETCH_LEAN_DISPLAY
+        ).define(
+                OFFSETS_PER_PAGE_CONFIG,
+                Type.STRING,
+                OFFSETS_PER_PAGE_DEFAULT,
+                Importance.LOW,
+                OFFSETS_PER_PAGE_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                OFFSETS_PER_PAGE_DISPLAY
+        ).define(
+                QUERY_FILTER_CONFIG,
+                Type.STRING,
+                null,
+                (name, value) -> {
+                    if (value == null) {
+                        return;
+                    }
+                    try {
+                        if (!new ObjectMapper().readTree((String) value).isObject()) {
+                            throw new ConfigException(name, value, "the query must be a json object");
+                        }
+                    } catch (IOException e) {
+                        throw new ConfigException(name, value, "invalid json: " + e.getMessage());
+                    }
+                },
+                Importance.MEDIUM,
+                QUERY_FILTER_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.LONG,
+                QUERY_FILTER_DISPLAY
+        ).define(
+                FETCH_DOCVALUE_FIELDS_CONFIG,
+                Type.STRING,
+                null,
+                Importance.LOW,
+                FETCH_DOCVALUE_FIELDS_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.LONG,
+                FETCH_DOCVALUE_FIELDS_DISPLAY
+        ).define(
+                BACKFILL_WINDOWS_CONFIG,
+                Type.STRING,
+                BACKFILL_WINDOWS_DEFAULT,
+                Importance.LOW,
+                BACKFILL_WINDOWS_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                BACKFILL_WINDOWS_DISPLAY
+        ).define(
+                BACKFILL_THREADS_CONFIG,
+                Type.STRING,
+                BACKFILL_THREADS_DEFAULT,
+                Importance.LOW,
+                BACKFILL_THREADS_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                BACKFILL_THREADS_DISPLAY
+        ).define(
+                RECONCILIATION_INTERVAL_CONFIG,
+                Type.STRING,
+                RECONCILIATION_INTERVAL_DEFAULT,
+                Importance.LOW,
+                RECONCILIATION_INTERVAL_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                RECONCILIATION_INTERVAL_DISPLAY
+        ).define(
+                RECONCILIATION_DIR_CONFIG,
+                Type.STRING,
+                null,
+                Importance.LOW,
+                RECONCILIATION_DIR_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.LONG,
+                RECONCILIATION_DIR_DISPLAY
+        ).define(
+                BACKLOG_INTERVAL_CONFIG,
+                Type.STRING,
+                BACKLOG_INTERVAL_DEFAULT,
+                Importance.LOW,
+                BACKLOG_INTERVAL_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                BACKLOG_INTERVAL_DISPLAY
+        ).define(
+                BACKLOG_MAX_COUNT_CONFIG,
+                Type.STRING,
+                BACKLOG_MAX_COUNT_DEFAULT,
+                Importance.LOW,
+                BACKLOG_MAX_COUNT_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                BACKLOG_MAX_COUNT_DISPLAY
+        ).define(
+                STAGE_TIMING_SAMPLING_CONFIG,
+                Type.STRING,
+                STAGE_TIMING_SAMPLING_DEFAULT,
+                Importance.LOW,
+                STAGE_TIMING_SAMPLING_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                STAGE_TIMING_SAMPLING_DISPLAY
+        ).define(
+                STAGE_TIMING_LOG_INTERVAL_CONFIG,
+                Type.STRING,
+                STAGE_TIMING_LOG_INTERVAL_DEFAULT,
+                Importance.LOW,
+                STAGE_TIMING_LOG_INTERVAL_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                STAGE_TIMING_LOG_INTERVAL_DISPLAY
+        ).define(
+                PROGRESS_LOG_INTERVAL_CONFIG,
+                Type.STRING,
+                PROGRESS_LOG_INTERVAL_DEFAULT,
+                Importance.LOW,
+                PROGRESS_LOG_INTERVAL_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                PROGRESS_LOG_INTERVAL_DISPLAY
+        ).define(
+                ES_RESPONSE_FORMAT_CONFIG,
+                Type.STRING,
+                RESPONSE_FORMAT_JSON,
+                ConfigDef.ValidString.in(
+                        RESPONSE_FORMAT_JSON,
+                        RESPONSE_FORMAT_SMILE,
+                        RESPONSE_FORMAT_CBOR
+                ),
+                Importance.LOW,
+                ES_RESPONSE_FORMAT_DOC,
+                CONNECTOR_GROUP,
+                ++orderInGroup,
+                Width.SHORT,
+                ES_RESPONSE_FORMAT_DISPLAY
         ).define(
                 TOPIC_PREFIX_CONFIG,
                 Type.STRING,
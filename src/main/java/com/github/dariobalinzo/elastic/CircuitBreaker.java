@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker shared by all the users of a connection: after {@code failureThreshold} consecutive failures
+ * (rejections or unavailability) the circuit opens and requests are paused for {@code openMs}. Then a single trial
+ * request is let through: a success closes the circuit, a failure opens it again.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMs;
+    private final LongSupplier clock;
+
+    private int consecutiveFailures = 0;
+    private long openUntil = 0;
+
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this(failureThreshold, openMs, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMs, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.clock = clock;
+    }
+
+    /**
+     * @return 0 if the request can be sent, otherwise the time in ms to wait before asking again
+     */
+    public synchronized long acquire() {
+        if (!isTripped()) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        if (now < openUntil) {
+            return openUntil - now;
+        }
+        //half open: this caller sends the trial request, the others keep waiting
+        openUntil = now + openMs;
+        return 0;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        openUntil = 0;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (isTripped()) {
+            openUntil = clock.getAsLong() + openMs;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return isTripped() && clock.getAsLong() < openUntil;
+    }
+
+    private boolean isTripped() {
+        return failureThreshold > 0 && consecutiveFailures >= failureThreshold;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.elastic;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.HeapBufferedAsyncResponseConsumer;
+import org.elasticsearch.client.HttpAsyncResponseConsumerFactory;
+
+/**
+ * Same heap buffered consumer as the default one of the client, reporting the size of each buffered response body.
+ */
+class CountingResponseConsumerFactory implements HttpAsyncResponseConsumerFactory {
+    //same limit as the default factory of the client
+    private static final int BUFFER_LIMIT = 100 * 1024 * 1024;
+
+    private final SearchListener listener;
+
+    CountingResponseConsumerFactory(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public HttpAsyncResponseConsumer<HttpResponse> createHttpAsyncResponseConsumer() {
+        return new HeapBufferedAsyncResponseConsumer(BUFFER_LIMIT) {
+            @Override
+            protected HttpResponse buildResult(HttpContext context) throws Exception {
+                HttpResponse response = super.buildResult(context);
+                HttpEntity entity = response.getEntity();
+                if (entity != null && entity.getContentLength() >= 0) {
+                    listener.onResponseBytes(entity.getContentLength());
+                }
+                return response;
+            }
+        };
+    }
+}
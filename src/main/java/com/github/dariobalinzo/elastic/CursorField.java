@@ -1,35 +1,53 @@
 package com.github.dariobalinzo.elastic;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.github.dariobalinzo.elastic.ElasticJsonNaming.removeKeywordSuffix;
 
 public class CursorField {
-    private final String cursor;
+    //the lookups of each nesting level are computed once: a dotted key is matched as a whole first,
+    //then its part before the first dot is looked up as a parent object holding the rest of the path
+    private final String[] keys;
+    private final String[] parents;
 
     public CursorField(String cursor) {
-        this.cursor = removeKeywordSuffix(cursor);
+        List<String> keyList = new ArrayList<>();
+        List<String> parentList = new ArrayList<>();
+        String field = removeKeywordSuffix(cursor);
+        while (true) {
+            int firstDot = field.indexOf('.');
+            keyList.add(field);
+            if (firstDot > 0 && firstDot < field.length() - 1) {
+                parentList.add(field.substring(0, firstDot));
+                field = field.substring(firstDot + 1);
+            } else {
+                parentList.add(null);
+                break;
+            }
+        }
+        this.keys = keyList.toArray(new String[0]);
+        this.parents = parentList.toArray(new String[0]);
     }
 
+    @SuppressWarnings("unchecked")
     public String read(Map<String, Object> document) {
-        return read(document, cursor);
-    }
-
-    private String read(Map<String, Object> document, String field) {
-        int firstDot = field.indexOf('.');
-
-        Object value = null;
-        if (document.containsKey(field)) {
-            value = document.get(field);
-        } else if (firstDot > 0 && firstDot < field.length() - 1) {
-            String parent = field.substring(0, firstDot);
-            Object nested = document.get(parent);
-            if (nested instanceof Map) {
-                return read((Map<String, Object>) document.get(parent),
-                            field.substring(firstDot + 1));
+        Map<String, Object> level = document;
+        for (int i = 0; i < keys.length; i++) {
+            if (level.containsKey(keys[i])) {
+                Object value = level.get(keys[i]);
+                return value == null ? null : value.toString();
+            }
+            if (parents[i] == null) {
+                return null;
             }
+            Object nested = level.get(parents[i]);
+            if (!(nested instanceof Map)) {
+                return null;
+            }
+            level = (Map<String, Object>) nested;
         }
-
-        return value == null ? null : value.toString();
+        return null;
     }
 }
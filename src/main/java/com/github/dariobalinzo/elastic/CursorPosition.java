@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.elastic;
+
+import com.github.dariobalinzo.elastic.response.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position in a page of documents, advanced with the cursor values of each document read. A single mutable
+ * instance is used for a whole page, a {@link Cursor} is only built when the position must be kept.
+ * <p>
+ * Without a secondary cursor field and with boundary ids enabled, the ids of the documents read with the same
+ * cursor value are kept (up to the configured limit), so that the next search can include the cursor value
+ * itself and still skip them.
+ */
+public class CursorPosition {
+    private final boolean trackIds;
+    private final int maxBoundaryIds;
+    private final List<String> boundaryIds = new ArrayList<>();
+    private String primaryCursor;
+    private String secondaryCursor;
+
+    CursorPosition(Cursor start, boolean secondarySort, int maxBoundaryIds) {
+        this.trackIds = !secondarySort && maxBoundaryIds > 0;
+        this.maxBoundaryIds = maxBoundaryIds;
+        this.primaryCursor = start.getPrimaryCursor();
+        this.secondaryCursor = start.getSecondaryCursor();
+        this.boundaryIds.addAll(start.getBoundaryIds());
+    }
+
+    /**
+     * @return true if this document exceeded the limit of boundary ids for its cursor value: the ones after it
+     * with the same value will be skipped
+     */
+    public boolean advance(String primaryValue, String secondaryValue, String id) {
+        if (!trackIds) {
+            primaryCursor = primaryValue;
+            secondaryCursor = secondaryValue;
+            return false;
+        }
+        if (primaryValue != null && primaryValue.equals(primaryCursor)) {
+            if (boundaryIds.isEmpty()) {
+                //the limit was already exceeded for this value
+                return false;
+            }
+        } else {
+            primaryCursor = primaryValue;
+            boundaryIds.clear();
+        }
+        boundaryIds.add(id);
+        if (boundaryIds.size() > maxBoundaryIds) {
+            boundaryIds.clear();
+            return true;
+        }
+        return false;
+    }
+
+    public String getPrimaryCursor() {
+        return primaryCursor;
+    }
+
+    public String getSecondaryCursor() {
+        return secondaryCursor;
+    }
+
+    /**
+     * The ids of the documents read with the current cursor value: a live view, changed by the next advance.
+     */
+    public List<String> getBoundaryIds() {
+        return boundaryIds;
+    }
+
+    public Cursor toCursor() {
+        if (boundaryIds.isEmpty()) {
+            return new Cursor(primaryCursor, secondaryCursor);
+        }
+        return Cursor.withBoundaryIds(primaryCursor, new ArrayList<>(boundaryIds));
+    }
+}
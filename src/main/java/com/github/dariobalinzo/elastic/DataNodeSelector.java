@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.NodeSelector;
+
+import java.util.Iterator;
+
+/**
+ * Routes requests to data nodes and coordinating only nodes, skipping dedicated master and ingest nodes.
+ * Nodes with unknown roles (e.g. configured hosts not yet sniffed) are kept.
+ */
+public class DataNodeSelector implements NodeSelector {
+
+    @Override
+    public void select(Iterable<Node> nodes) {
+        for (Iterator<Node> itr = nodes.iterator(); itr.hasNext(); ) {
+            Node.Roles roles = itr.next().getRoles();
+            if (roles != null && !roles.canContainData() && !isCoordinatingOnly(roles)) {
+                itr.remove();
+            }
+        }
+    }
+
+    private boolean isCoordinatingOnly(Node.Roles roles) {
+        return !roles.isMasterEligible() && !roles.isIngest();
+    }
+
+    @Override
+    public String toString() {
+        return "DATA_OR_COORDINATING";
+    }
+}
@@ -17,14 +17,23 @@
 package com.github.dariobalinzo.elastic;
 
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,18 +51,45 @@ public class ElasticConnection {
     public final static Logger logger = LoggerFactory.getLogger(ElasticConnection.class);
 
     private RestHighLevelClient client;
+    private Sniffer sniffer;
     private final long connectionRetryBackoff;
+    private final ExponentialBackoff backoff;
+    private final CircuitBreaker circuitBreaker;
     private final int maxConnectionAttempts;
     private final String hosts;
     private final String protocol;
     private final int port;
     private final SSLContext sslContext;
     private final CredentialsProvider credentialsProvider;
+    private final boolean compressionEnabled;
+    private final Integer ioThreadCount;
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final int connectTimeoutMs;
+    private final int socketTimeoutMs;
+    private final Long keepAliveMs;
+    private final boolean snifferEnabled;
+    private final int sniffIntervalMs;
+    private final int sniffAfterFailureDelayMs;
+    private final NodeSelector nodeSelector;
+    private final ElasticConnectionRegistry registry;
 
-    ElasticConnection(ElasticConnectionBuilder builder) {
+    ElasticConnection(ElasticConnectionBuilder builder, ElasticConnectionRegistry registry) {
+        this.registry = registry;
         hosts = builder.hosts;
         protocol = builder.protocol;
         port = builder.port;
+        compressionEnabled = builder.compressionEnabled;
+        ioThreadCount = builder.ioThreadCount;
+        maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        maxConnectionsTotal = builder.maxConnectionsTotal;
+        connectTimeoutMs = builder.connectTimeoutMs;
+        socketTimeoutMs = builder.socketTimeoutMs;
+        keepAliveMs = builder.keepAliveMs;
+        snifferEnabled = builder.snifferEnabled;
+        sniffIntervalMs = builder.sniffIntervalMs;
+        sniffAfterFailureDelayMs = builder.sniffAfterFailureDelayMs;
+        nodeSelector = builder.nodeSelector;
 
         String user = builder.user;
         String pwd = builder.pwd;
@@ -77,25 +113,102 @@ public class ElasticConnection {
 
         this.maxConnectionAttempts = builder.maxConnectionAttempts;
         this.connectionRetryBackoff = builder.connectionRetryBackoff;
+        this.backoff = new ExponentialBackoff(builder.connectionRetryBackoff, builder.maxConnectionRetryBackoff);
+        this.circuitBreaker = new CircuitBreaker(builder.circuitBreakerThreshold, builder.circuitBreakerOpenMs);
+    }
+
+    /**
+     * The handle of one holder of a shared connection: same client, backoff and circuit breaker.
+     */
+    ElasticConnection(ElasticConnection shared) {
+        this.registry = shared.registry;
+        client = shared.client;
+        sniffer = shared.sniffer;
+        hosts = shared.hosts;
+        protocol = shared.protocol;
+        port = shared.port;
+        sslContext = shared.sslContext;
+        credentialsProvider = shared.credentialsProvider;
+        compressionEnabled = shared.compressionEnabled;
+        ioThreadCount = shared.ioThreadCount;
+        maxConnectionsPerRoute = shared.maxConnectionsPerRoute;
+        maxConnectionsTotal = shared.maxConnectionsTotal;
+        connectTimeoutMs = shared.connectTimeoutMs;
+        socketTimeoutMs = shared.socketTimeoutMs;
+        keepAliveMs = shared.keepAliveMs;
+        snifferEnabled = shared.snifferEnabled;
+        sniffIntervalMs = shared.sniffIntervalMs;
+        sniffAfterFailureDelayMs = shared.sniffAfterFailureDelayMs;
+        nodeSelector = shared.nodeSelector;
+        maxConnectionAttempts = shared.maxConnectionAttempts;
+        connectionRetryBackoff = shared.connectionRetryBackoff;
+        backoff = shared.backoff;
+        circuitBreaker = shared.circuitBreaker;
     }
 
     private void createConnection() {
         HttpHost[] hostList = parseHosts(hosts, protocol, port);
+        SniffOnFailureListener sniffOnFailureListener = snifferEnabled ? new SniffOnFailureListener() : null;
+
+        RestClientBuilder restClientBuilder = RestClient.builder(hostList)
+                .setNodeSelector(nodeSelector)
+                .setCompressionEnabled(compressionEnabled)
+                .setRequestConfigCallback(
+                        requestConfigBuilder -> requestConfigBuilder
+                                .setConnectTimeout(connectTimeoutMs)
+                                .setSocketTimeout(socketTimeoutMs)
+                )
+                .setHttpClientConfigCallback(
+                        httpClientBuilder -> {
+                            if (credentialsProvider != null) {
+                                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+                            }
+                            if (sslContext != null) {
+                                httpClientBuilder.setSSLContext(sslContext);
+                            }
+                            if (ioThreadCount != null) {
+                                httpClientBuilder.setDefaultIOReactorConfig(
+                                        IOReactorConfig.custom()
+                                                .setIoThreadCount(ioThreadCount)
+                                                .build()
+                                );
+                            }
+                            if (keepAliveMs != null) {
+                                httpClientBuilder.setKeepAliveStrategy(this::keepAliveDuration);
+                            }
+                            return httpClientBuilder
+                                    .setMaxConnPerRoute(maxConnectionsPerRoute)
+                                    .setMaxConnTotal(maxConnectionsTotal);
+                        }
+                );
+        if (sniffOnFailureListener != null) {
+            restClientBuilder.setFailureListener(sniffOnFailureListener);
+        }
+
+        client = new RestHighLevelClient(restClientBuilder);
+
+        if (snifferEnabled) {
+            RestClient lowLevelClient = client.getLowLevelClient();
+            ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(protocol) ?
+                    ElasticsearchNodesSniffer.Scheme.HTTPS :
+                    ElasticsearchNodesSniffer.Scheme.HTTP;
+            sniffer = Sniffer.builder(lowLevelClient)
+                    .setNodesSniffer(new ElasticsearchNodesSniffer(
+                            lowLevelClient,
+                            ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                            scheme
+                    ))
+                    .setSniffIntervalMillis(sniffIntervalMs)
+                    .setSniffAfterFailureDelayMillis(sniffAfterFailureDelayMs)
+                    .build();
+            sniffOnFailureListener.setSniffer(sniffer);
+        }
+    }
 
-        client = new RestHighLevelClient(
-                RestClient.builder(hostList)
-                        .setHttpClientConfigCallback(
-                                httpClientBuilder -> {
-                                    if (credentialsProvider != null) {
-                                        httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-                                    }
-                                    if (sslContext != null) {
-                                        httpClientBuilder.setSSLContext(sslContext);
-                                    }
-                                    return httpClientBuilder;
-                                }
-                        )
-        );
+    //the server keep-alive hint (if any) wins when it is shorter than the configured one
+    private long keepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMs) : keepAliveMs;
     }
 
     private SSLContext getSslContext(String trustStoreConf, String trustStorePass,
@@ -143,11 +256,34 @@ public class ElasticConnection {
         return connectionRetryBackoff;
     }
 
+    public ExponentialBackoff getBackoff() {
+        return backoff;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     public int getMaxConnectionAttempts() {
         return maxConnectionAttempts;
     }
 
+    /**
+     * Closes the connection, or releases it when it is shared: the client is then closed only once
+     * all the holders released it. Releasing a shared connection twice has no effect.
+     */
     public void closeQuietly() {
+        if (registry != null) {
+            registry.release(this);
+        } else {
+            closeClient();
+        }
+    }
+
+    void closeClient() {
+        if (sniffer != null) {
+            sniffer.close();
+        }
         try {
             client.close();
         } catch (IOException e) {
@@ -16,6 +16,12 @@
 
 package com.github.dariobalinzo.elastic;
 
+import org.elasticsearch.client.NodeSelector;
+import org.elasticsearch.client.RestClientBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
 public class ElasticConnectionBuilder {
     final String hosts;
     final int port;
@@ -23,6 +29,9 @@ public class ElasticConnectionBuilder {
     String protocol = "http";
     int maxConnectionAttempts = 3;
     long connectionRetryBackoff = 1_000;
+    long maxConnectionRetryBackoff = 60_000;
+    int circuitBreakerThreshold = 0;
+    long circuitBreakerOpenMs = 30_000;
     String user;
     String pwd;
 
@@ -31,6 +40,21 @@ public class ElasticConnectionBuilder {
     String keyStorePath;
     String keyStorePassword;
 
+    boolean compressionEnabled = false;
+    Integer ioThreadCount;
+    int maxConnectionsPerRoute = RestClientBuilder.DEFAULT_MAX_CONN_PER_ROUTE;
+    int maxConnectionsTotal = RestClientBuilder.DEFAULT_MAX_CONN_TOTAL;
+    int connectTimeoutMs = RestClientBuilder.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    int socketTimeoutMs = RestClientBuilder.DEFAULT_SOCKET_TIMEOUT_MILLIS;
+    Long keepAliveMs;
+
+    boolean snifferEnabled = false;
+    int sniffIntervalMs = 5 * 60 * 1000;
+    int sniffAfterFailureDelayMs = 60 * 1000;
+    NodeSelector nodeSelector = NodeSelector.ANY;
+
+    boolean shared = false;
+
     public ElasticConnectionBuilder(String hosts, int port) {
         this.hosts = hosts;
         this.port = port;
@@ -61,6 +85,20 @@ public class ElasticConnectionBuilder {
         return this;
     }
 
+    public ElasticConnectionBuilder withMaxBackoff(long maxConnectionRetryBackoff) {
+        this.maxConnectionRetryBackoff = maxConnectionRetryBackoff;
+        return this;
+    }
+
+    /**
+     * Pauses the requests for {@code openMs} after {@code failureThreshold} consecutive failures (0 disables it).
+     */
+    public ElasticConnectionBuilder withCircuitBreaker(int failureThreshold, long openMs) {
+        this.circuitBreakerThreshold = failureThreshold;
+        this.circuitBreakerOpenMs = openMs;
+        return this;
+    }
+
     public ElasticConnectionBuilder withTrustStore(String path, String password) {
         this.trustStorePath = path;
         this.trustStorePassword = password;
@@ -73,8 +111,75 @@ public class ElasticConnectionBuilder {
         return this;
     }
 
+    public ElasticConnectionBuilder withCompression(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    public ElasticConnectionBuilder withIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+        return this;
+    }
+
+    public ElasticConnectionBuilder withMaxConnections(int perRoute, int total) {
+        this.maxConnectionsPerRoute = perRoute;
+        this.maxConnectionsTotal = total;
+        return this;
+    }
+
+    public ElasticConnectionBuilder withTimeouts(int connectTimeoutMs, int socketTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.socketTimeoutMs = socketTimeoutMs;
+        return this;
+    }
+
+    public ElasticConnectionBuilder withKeepAlive(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+        return this;
+    }
+
+    /**
+     * Periodically discovers the cluster nodes, replacing the configured host list. Nodes are sniffed
+     * every {@code intervalMs}, and again {@code afterFailureDelayMs} after a node failure.
+     */
+    public ElasticConnectionBuilder withSniffer(int intervalMs, int afterFailureDelayMs) {
+        this.snifferEnabled = true;
+        this.sniffIntervalMs = intervalMs;
+        this.sniffAfterFailureDelayMs = afterFailureDelayMs;
+        return this;
+    }
+
+    public ElasticConnectionBuilder withNodeSelector(NodeSelector nodeSelector) {
+        this.nodeSelector = nodeSelector;
+        return this;
+    }
+
+    /**
+     * Shared connections are handed out by the {@link ElasticConnectionRegistry}: builders with the same settings
+     * get the same underlying client, which is closed when the last holder closes it.
+     */
+    public ElasticConnectionBuilder withSharing(boolean shared) {
+        this.shared = shared;
+        return this;
+    }
+
     public ElasticConnection build() {
-        return new ElasticConnection(this);
+        return shared ?
+                ElasticConnectionRegistry.getInstance().acquire(this) :
+                new ElasticConnection(this, null);
+    }
+
+    List<Object> sharingKey() {
+        return Arrays.asList(
+                hosts, port, protocol,
+                maxConnectionAttempts, connectionRetryBackoff, maxConnectionRetryBackoff,
+                circuitBreakerThreshold, circuitBreakerOpenMs,
+                user, pwd,
+                trustStorePath, trustStorePassword, keyStorePath, keyStorePassword,
+                compressionEnabled, ioThreadCount, maxConnectionsPerRoute, maxConnectionsTotal,
+                connectTimeoutMs, socketTimeoutMs, keepAliveMs,
+                snifferEnabled, sniffIntervalMs, sniffAfterFailureDelayMs, nodeSelector.toString()
+        );
     }
 
 }
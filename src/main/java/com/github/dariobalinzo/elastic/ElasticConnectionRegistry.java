@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM-wide registry of reference-counted connections: connectors and tasks running in the same worker
+ * with the same connection settings share a single client (I/O threads, connection pool, TLS sessions).
+ * Each holder gets its own handle, released once: closing it again does not release another holder's reference.
+ */
+public class ElasticConnectionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ElasticConnectionRegistry.class);
+    private static final ElasticConnectionRegistry INSTANCE = new ElasticConnectionRegistry();
+
+    private final Map<List<Object>, SharedConnection> connections = new HashMap<>();
+
+    ElasticConnectionRegistry() {
+    }
+
+    public static ElasticConnectionRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    synchronized ElasticConnection acquire(ElasticConnectionBuilder builder) {
+        List<Object> key = builder.sharingKey();
+        SharedConnection shared = connections.get(key);
+        if (shared == null) {
+            ElasticConnection connection = new ElasticConnection(builder, this);
+            shared = new SharedConnection(key, connection);
+            connections.put(key, shared);
+            logger.debug("created shared connection to {}", builder.hosts);
+        }
+        ElasticConnection handle = new ElasticConnection(shared.connection);
+        shared.holders.add(handle);
+        return handle;
+    }
+
+    synchronized void release(ElasticConnection handle) {
+        SharedConnection shared = connections.values().stream()
+                .filter(c -> c.holders.contains(handle))
+                .findFirst()
+                .orElse(null);
+        if (shared == null) {
+            logger.debug("connection already released");
+            return;
+        }
+        shared.holders.remove(handle);
+        if (shared.holders.isEmpty()) {
+            connections.remove(shared.key);
+            shared.connection.closeClient();
+            logger.debug("closed shared connection");
+        }
+    }
+
+    public synchronized int size() {
+        return connections.size();
+    }
+
+    private static class SharedConnection {
+        private final List<Object> key;
+        private final ElasticConnection connection;
+        private final Set<ElasticConnection> holders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private SharedConnection(List<Object> key, ElasticConnection connection) {
+            this.key = key;
+            this.connection = connection;
+        }
+    }
+}
@@ -16,23 +16,51 @@
 
 package com.github.dariobalinzo.elastic;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dariobalinzo.elastic.response.Backlog;
 import com.github.dariobalinzo.elastic.response.Cursor;
+import com.github.dariobalinzo.elastic.response.CursorRange;
 import com.github.dariobalinzo.elastic.response.PageResult;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.Max;
+import org.elasticsearch.search.aggregations.metrics.Min;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.github.dariobalinzo.elastic.ElasticJsonNaming.removeKeywordSuffix;
@@ -42,13 +70,38 @@ public final class ElasticRepository {
     private final static Logger logger = LoggerFactory.getLogger(ElasticRepository.class);
 
     private final ElasticConnection elasticConnection;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     private final String cursorSearchField;
     private final String secondaryCursorSearchField;
     private final CursorField cursorField;
     private final CursorField secondaryCursorField;
 
+    //"took" is always kept: a fully filtered response ("{}") cannot be parsed as a search response
+    private static final String LEAN_FILTER_PATH = String.join(",",
+            "took",
+            "hits.hits._id",
+            "hits.hits._index",
+            "hits.hits._source",
+            "hits.hits.sort",
+            "hits.hits._seq_no",
+            "hits.hits._primary_term",
+            "hits.hits.fields"
+    );
+    private static final String SEQ_NO_FIELD = "_seq_no";
+    private static final TimeValue SCAN_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
     private int pageSize = 5000;
+    private boolean leanFetch = false;
+    private XContentType responseFormat = XContentType.JSON;
+    private RequestOptions searchOptions = RequestOptions.DEFAULT;
+    private RequestOptions pageSearchOptions = RequestOptions.DEFAULT;
+    private HedgingPolicy hedgingPolicy;
+    private long cursorSettleMs = 0;
+    private int maxBoundaryIds = 0;
+    private List<String> docValueFields = Collections.emptyList();
+    private QueryBuilder queryFilter;
+    private SearchListener searchListener;
 
     public ElasticRepository(ElasticConnection elasticConnection) {
         this(elasticConnection, "_id");
@@ -67,76 +120,396 @@ public final class ElasticRepository {
     }
 
     public PageResult searchAfter(String index, Cursor cursor) throws IOException, InterruptedException {
-        QueryBuilder queryBuilder = cursor.getPrimaryCursor() == null ?
-                matchAllQuery() :
-                buildGreaterThen(cursorSearchField, cursor.getPrimaryCursor());
+        return searchAfter(index, cursor, null, null, null);
+    }
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
-                .query(queryBuilder)
-                .size(pageSize)
+    /**
+     * Same as {@link #searchAfter(String, Cursor)}, reading only the documents with a cursor value
+     * in (lowerBound, upperBound] (no bound if null). The bounds are parsed with the given format,
+     * see {@link CursorRange#getBoundsFormat()}.
+     */
+    public PageResult searchAfter(String index, Cursor cursor, String lowerBound, String upperBound, String boundsFormat)
+            throws IOException, InterruptedException {
+        long buildStart = System.nanoTime();
+        QueryBuilder queryBuilder = settled(buildCursorQuery(cursor, lowerBound, upperBound, boundsFormat));
+
+        SearchSourceBuilder searchSourceBuilder = pageSearchSource(queryBuilder)
                 .sort(cursorSearchField, SortOrder.ASC);
 
         SearchRequest searchRequest = new SearchRequest(index)
                 .source(searchSourceBuilder);
 
-        SearchResponse response = executeSearch(searchRequest);
-
-        List<Map<String, Object>> documents = extractDocuments(response);
+        List<Map<String, Object>> documents = searchPage(searchRequest, buildStart);
+        return toPageResult(index, documents, cursor);
+    }
 
-        Cursor lastCursor;
+    //the cursor values of each document are read once, the page carries them to the task
+    private PageResult toPageResult(String index, List<Map<String, Object>> documents, Cursor cursor) {
         if (documents.isEmpty()) {
-            lastCursor = Cursor.empty();
+            return new PageResult(index, documents, Cursor.empty(), Collections.emptyList(), null);
+        }
+        List<String> primaryCursors = new ArrayList<>(documents.size());
+        List<String> secondaryCursors = secondaryCursorField == null ? null : new ArrayList<>(documents.size());
+        CursorPosition position = position(cursor);
+        for (Map<String, Object> document : documents) {
+            String primaryCursor = cursorField.read(document);
+            String secondaryCursor = secondaryCursorField == null ? null : secondaryCursorField.read(document);
+            primaryCursors.add(primaryCursor);
+            if (secondaryCursors != null) {
+                secondaryCursors.add(secondaryCursor);
+            }
+            if (position.advance(primaryCursor, secondaryCursor, (String) document.get("es-id"))) {
+                logger.warn("more than {} documents with cursor value {}, the remaining ones will be skipped",
+                        maxBoundaryIds, primaryCursor);
+            }
+        }
+        return new PageResult(index, documents, position.toCursor(), primaryCursors, secondaryCursors);
+    }
+
+    private SearchSourceBuilder pageSearchSource(QueryBuilder queryBuilder) {
+        SearchSourceBuilder searchSourceBuilder;
+        if (!leanFetch) {
+            searchSourceBuilder = new SearchSourceBuilder()
+                    .query(queryBuilder)
+                    .size(pageSize);
         } else {
-            Map<String, Object> lastDocument = documents.get(documents.size() - 1);
-            lastCursor = new Cursor(cursorField.read(lastDocument));
+            searchSourceBuilder = new SearchSourceBuilder()
+                    .query(constantScoreQuery(queryBuilder))
+                    .size(pageSize)
+                    .trackTotalHits(false)
+                    .trackScores(false);
         }
-        return new PageResult(index, documents, lastCursor);
+        if (!docValueFields.isEmpty()) {
+            searchSourceBuilder.fetchSource(false);
+            docValueFields.forEach(searchSourceBuilder::docValueField);
+        }
+        return searchSourceBuilder;
+    }
+
+    private List<Map<String, Object>> searchPage(SearchRequest searchRequest, long buildStart) throws IOException, InterruptedException {
+        long sent = System.nanoTime();
+        SearchResponse response = executeSearch(searchRequest, pageSearchOptions);
+        long received = System.nanoTime();
+        List<Map<String, Object>> documents = extractDocuments(response);
+        if (searchListener != null) {
+            searchListener.onPage(sent - buildStart, received - sent, System.nanoTime() - received);
+        }
+        return documents;
     }
 
     private List<Map<String, Object>> extractDocuments(SearchResponse response) {
+        //with a filter_path, a page without hits has no "hits" section at all
+        if (response.getHits() == null) {
+            return new ArrayList<>();
+        }
         return Arrays.stream(response.getHits().getHits())
                 .map(hit -> {
-                    Map<String, Object> sourceMap = hit.getSourceAsMap();
+                    Map<String, Object> sourceMap = hit.hasSource() ? hit.getSourceAsMap() : docValuesAsMap(hit);
                     sourceMap.put("es-id", hit.getId());
                     sourceMap.put("es-index", hit.getIndex());
+                    if (hit.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+                        sourceMap.put("es-seq-no", hit.getSeqNo());
+                        sourceMap.put("es-primary-term", hit.getPrimaryTerm());
+                    }
                     return sourceMap;
                 }).collect(Collectors.toList());
     }
 
+    //dotted field names are expanded to nested objects, as they would be in the source
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> docValuesAsMap(SearchHit hit) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        hit.getFields().forEach((name, field) -> {
+            List<Object> values = field.getValues();
+            Object value = values.size() == 1 ? values.get(0) : new ArrayList<>(values);
+
+            String[] path = removeKeywordSuffix(name).split("\\.");
+            Map<String, Object> parent = document;
+            for (int i = 0; i < path.length - 1 && parent != null; i++) {
+                Object child = parent.computeIfAbsent(path[i], k -> new LinkedHashMap<String, Object>());
+                parent = child instanceof Map ? (Map<String, Object>) child : null;
+            }
+            if (parent == null) {
+                document.put(removeKeywordSuffix(name), value);
+            } else {
+                parent.put(path[path.length - 1], value);
+            }
+        });
+        return document;
+    }
+
     public PageResult searchAfterWithSecondarySort(String index, Cursor cursor) throws IOException, InterruptedException {
+        long buildStart = System.nanoTime();
         Objects.requireNonNull(secondaryCursorField);
-        String primaryCursor = cursor.getPrimaryCursor();
-        String secondaryCursor = cursor.getSecondaryCursor();
-        boolean noPrevCursor = primaryCursor == null && secondaryCursor == null;
-
-        QueryBuilder queryBuilder = noPrevCursor ? matchAllQuery() :
-                getSecondarySortFieldQuery(primaryCursor, secondaryCursor);
+        QueryBuilder queryBuilder = settled(buildCursorQueryWithSecondarySort(cursor));
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
-                .query(queryBuilder)
-                .size(pageSize)
+        SearchSourceBuilder searchSourceBuilder = pageSearchSource(queryBuilder)
                 .sort(cursorSearchField, SortOrder.ASC)
                 .sort(secondaryCursorSearchField, SortOrder.ASC);
 
         SearchRequest searchRequest = new SearchRequest(index)
                 .source(searchSourceBuilder);
 
-        SearchResponse response = executeSearch(searchRequest);
+        List<Map<String, Object>> documents = searchPage(searchRequest, buildStart);
+        return toPageResult(index, documents, cursor);
+    }
 
-        List<Map<String, Object>> documents = extractDocuments(response);
+    /**
+     * Reads, in sequence number order, the operations of a single shard with a sequence number
+     * in (cursor, maxSeqNo]. Only the last operation of each document is still searchable, so updated documents
+     * are returned once, with their latest sequence number.
+     * The returned cursor is the sequence number of the last document or, when the page is not full,
+     * maxSeqNo itself: all the operations up to it have been read.
+     */
+    public PageResult searchAfterSeqNo(String index, int shard, Cursor cursor, long maxSeqNo) throws IOException, InterruptedException {
+        long buildStart = System.nanoTime();
+        long lastSeqNo = cursor.getPrimaryCursor() == null ?
+                SequenceNumbers.NO_OPS_PERFORMED :
+                Long.parseLong(cursor.getPrimaryCursor());
+
+        QueryBuilder queryBuilder = filtered(rangeQuery(SEQ_NO_FIELD).gt(lastSeqNo).lte(maxSeqNo));
+
+        SearchSourceBuilder searchSourceBuilder = pageSearchSource(queryBuilder)
+                .sort(SEQ_NO_FIELD, SortOrder.ASC)
+                .seqNoAndPrimaryTerm(true);
+
+        SearchRequest searchRequest = new SearchRequest(index)
+                .preference("_shards:" + shard)
+                .source(searchSourceBuilder);
+
+        List<Map<String, Object>> documents = searchPage(searchRequest, buildStart);
 
         Cursor lastCursor;
-        if (documents.isEmpty()) {
-            lastCursor = Cursor.empty();
+        if (documents.size() < pageSize) {
+            lastCursor = new Cursor(String.valueOf(maxSeqNo));
         } else {
             Map<String, Object> lastDocument = documents.get(documents.size() - 1);
-            String primaryCursorValue = cursorField.read(lastDocument);
-            String secondaryCursorValue = secondaryCursorField.read(lastDocument);
-            lastCursor = new Cursor(primaryCursorValue, secondaryCursorValue);
+            lastCursor = new Cursor(String.valueOf(lastDocument.get("es-seq-no")));
         }
         return new PageResult(index, documents, lastCursor);
     }
 
+    /**
+     * Global checkpoint of each shard of the index: the operations up to it are persisted on every in-sync copy,
+     * so they cannot be rolled back by a primary failover.
+     */
+    public Map<Integer, Long> globalCheckpoints(String index) throws IOException {
+        Request request = new Request("GET", "/" + index + "/_stats/docs");
+        request.addParameter("level", "shards");
+        request.addParameter("filter_path", "indices.*.shards.*.seq_no.global_checkpoint");
+        Response response = elasticConnection.getClient().getLowLevelClient().performRequest(request);
+
+        JsonNode shards;
+        try (InputStream content = response.getEntity().getContent()) {
+            shards = objectMapper.readTree(content).path("indices").path(index).path("shards");
+        }
+
+        Map<Integer, Long> result = new TreeMap<>();
+        shards.fields().forEachRemaining(shard -> {
+            //one entry for each copy of the shard: the lowest one is the global checkpoint known to all of them
+            for (JsonNode copy : shard.getValue()) {
+                long checkpoint = copy.path("seq_no").path("global_checkpoint").asLong(SequenceNumbers.NO_OPS_PERFORMED);
+                result.merge(Integer.parseInt(shard.getKey()), checkpoint, Math::min);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Min and max value of the cursor field (numeric or date), null if the index has no document with the field.
+     */
+    public CursorRange cursorRange(String index) throws IOException, InterruptedException {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(settled(matchAllQuery()))
+                .size(0)
+                .trackTotalHits(false)
+                .aggregation(AggregationBuilders.min("min").field(cursorSearchField))
+                .aggregation(AggregationBuilders.max("max").field(cursorSearchField));
+
+        SearchRequest searchRequest = new SearchRequest(index)
+                .source(searchSourceBuilder);
+
+        SearchResponse response = executeSearch(searchRequest, searchOptions);
+        Min min = response.getAggregations().get("min");
+        Max max = response.getAggregations().get("max");
+        if (Double.isInfinite(min.getValue()) || Double.isInfinite(max.getValue())) {
+            return null;
+        }
+        //dates come with the max formatted as the field, numbers without (the client then prints the double)
+        String maxValue = max.getValueAsString();
+        if (maxValue.equals(Double.toString(max.getValue()))) {
+            maxValue = String.valueOf((long) max.getValue());
+        }
+        return new CursorRange((long) min.getValue(), (long) max.getValue(), maxValue);
+    }
+
+    /**
+     * Streams all the documents of the index, as seen by a point in time opened at the beginning of the scan,
+     * in index order. Only the cursor fields of the source are fetched. Requires Elasticsearch 7.12 for the _shard_doc
+     * tiebreaker sort (point in time search alone exists since 7.10).
+     */
+    public void scanCursorValues(String index, Consumer<Map<String, Object>> consumer) throws IOException, InterruptedException {
+        String[] cursorFields = secondaryCursorField == null ?
+                new String[]{removeKeywordSuffix(cursorSearchField)} :
+                new String[]{removeKeywordSuffix(cursorSearchField), removeKeywordSuffix(secondaryCursorSearchField)};
+
+        String pointInTimeId = elasticConnection.getClient()
+                .openPointInTime(new OpenPointInTimeRequest(index).keepAlive(SCAN_KEEP_ALIVE), searchOptions)
+                .getPointInTimeId();
+        try {
+            Object[] searchAfter = null;
+            while (true) {
+                SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                        .query(filtered(matchAllQuery()))
+                        .size(pageSize)
+                        .trackTotalHits(false)
+                        .fetchSource(cursorFields, null)
+                        .pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId).setKeepAlive(SCAN_KEEP_ALIVE))
+                        .sort(SortBuilders.pitTiebreaker());
+                if (searchAfter != null) {
+                    searchSourceBuilder.searchAfter(searchAfter);
+                }
+
+                SearchResponse response = executeSearch(new SearchRequest().source(searchSourceBuilder), searchOptions);
+                if (response.pointInTimeId() != null) {
+                    pointInTimeId = response.pointInTimeId();
+                }
+                SearchHit[] hits = response.getHits().getHits();
+                if (hits.length == 0) {
+                    return;
+                }
+                extractDocuments(response).forEach(consumer);
+                searchAfter = hits[hits.length - 1].getSortValues();
+            }
+        } finally {
+            try {
+                elasticConnection.getClient().closePointInTime(new ClosePointInTimeRequest(pointInTimeId), searchOptions);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("error closing point in time of index {}", index, e);
+            }
+        }
+    }
+
+    /**
+     * Cheap change detection: checks whether at least one document exists after the given cursor,
+     * without sorting nor fetching any document.
+     */
+    public boolean hasDocumentsAfter(String index, Cursor cursor) throws IOException, InterruptedException {
+        QueryBuilder queryBuilder = settled(secondaryCursorField == null ?
+                buildCursorQuery(cursor) :
+                buildCursorQueryWithSecondarySort(cursor));
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(queryBuilder)
+                .size(0)
+                .terminateAfter(1)
+                .trackTotalHitsUpTo(1);
+
+        SearchRequest searchRequest = new SearchRequest(index)
+                .source(searchSourceBuilder);
+
+        SearchResponse response = executeSearch(searchRequest, searchOptions);
+        return response.getHits().getTotalHits() != null && response.getHits().getTotalHits().value > 0;
+    }
+
+    /**
+     * Estimates how far behind the cursor is: the documents after it are counted up to maxCount, and the max
+     * value of their cursor field is computed. No document is fetched.
+     */
+    public Backlog backlog(String index, Cursor cursor, int maxCount) throws IOException, InterruptedException {
+        QueryBuilder queryBuilder = settled(secondaryCursorField == null ?
+                buildCursorQuery(cursor) :
+                buildCursorQueryWithSecondarySort(cursor));
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
+                .query(queryBuilder)
+                .size(0)
+                .trackTotalHitsUpTo(maxCount)
+                .aggregation(AggregationBuilders.max("max").field(cursorSearchField));
+
+        SearchRequest searchRequest = new SearchRequest(index)
+                .source(searchSourceBuilder);
+
+        SearchResponse response = executeSearch(searchRequest, searchOptions);
+        TotalHits totalHits = response.getHits().getTotalHits();
+        Max max = response.getAggregations().get("max");
+        return new Backlog(
+                totalHits == null ? 0 : totalHits.value,
+                totalHits != null && totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO,
+                Double.isInfinite(max.getValue()) ? Double.NaN : max.getValue()
+        );
+    }
+
+    //documents in the settle window may still be joined by older ones made visible by the next refresh
+    private QueryBuilder settled(QueryBuilder queryBuilder) {
+        if (cursorSettleMs <= 0) {
+            return filtered(queryBuilder);
+        }
+        return filtered(boolQuery()
+                .filter(queryBuilder)
+                .filter(rangeQuery(cursorSearchField).lte("now-" + cursorSettleMs + "ms")));
+    }
+
+    private QueryBuilder filtered(QueryBuilder queryBuilder) {
+        if (queryFilter == null) {
+            return queryBuilder;
+        }
+        return boolQuery()
+                .filter(queryBuilder)
+                .filter(queryFilter);
+    }
+
+    //the window bounds come from the cursor range, the cursor values are read from documents
+    private QueryBuilder buildCursorQuery(Cursor cursor, String lowerBound, String upperBound, String boundsFormat) {
+        if (lowerBound == null && upperBound == null) {
+            return buildCursorQuery(cursor);
+        }
+        RangeQueryBuilder window = rangeQuery(cursorSearchField);
+        if (boundsFormat != null) {
+            window.format(boundsFormat);
+        }
+        if (lowerBound != null) {
+            window.gt(lowerBound);
+        }
+        if (upperBound != null) {
+            window.lte(upperBound);
+        }
+        if (cursor.getPrimaryCursor() == null) {
+            return window;
+        }
+        return boolQuery()
+                .filter(buildCursorQuery(cursor))
+                .filter(window);
+    }
+
+    private QueryBuilder buildCursorQuery(Cursor cursor) {
+        if (cursor.getPrimaryCursor() == null) {
+            return matchAllQuery();
+        }
+        RangeQueryBuilder range = rangeQuery(cursorSearchField);
+        if (cursor.getBoundaryIds().isEmpty()) {
+            return range.gt(cursor.getPrimaryCursor());
+        }
+        return boolQuery()
+                .filter(range.gte(cursor.getPrimaryCursor()))
+                .mustNot(idsQuery().addIds(cursor.getBoundaryIds().toArray(new String[0])));
+    }
+
+    /**
+     * Position starting at the given cursor, to be advanced with the cursor values of the documents of a page.
+     */
+    public CursorPosition position(Cursor start) {
+        return new CursorPosition(start, secondaryCursorField != null, maxBoundaryIds);
+    }
+
+    private QueryBuilder buildCursorQueryWithSecondarySort(Cursor cursor) {
+        String primaryCursor = cursor.getPrimaryCursor();
+        String secondaryCursor = cursor.getSecondaryCursor();
+        boolean noPrevCursor = primaryCursor == null && secondaryCursor == null;
+        return noPrevCursor ? matchAllQuery() :
+                getSecondarySortFieldQuery(primaryCursor, secondaryCursor);
+    }
+
     private QueryBuilder buildGreaterThen(String cursorField, String cursorValue) {
         return rangeQuery(cursorField).from(cursorValue, false);
     }
@@ -155,22 +528,130 @@ public final class ElasticRepository {
                 );
     }
 
-    private SearchResponse executeSearch(SearchRequest searchRequest) throws IOException, InterruptedException {
+    private SearchResponse executeSearch(SearchRequest searchRequest, RequestOptions options) throws IOException, InterruptedException {
         int maxTrials = elasticConnection.getMaxConnectionAttempts();
         if (maxTrials <= 0) {
             throw new IllegalArgumentException("MaxConnectionAttempts should be > 0");
         }
-        IOException lastError = null;
+        CircuitBreaker circuitBreaker = elasticConnection.getCircuitBreaker();
+        Exception lastError = null;
         for (int i = 0; i < maxTrials; ++i) {
+            awaitCircuitBreaker(circuitBreaker);
             try {
-                return elasticConnection.getClient()
-                        .search(searchRequest, RequestOptions.DEFAULT);
+                long start = System.currentTimeMillis();
+                SearchResponse response = hedgingPolicy == null ?
+                        elasticConnection.getClient().search(searchRequest, options) :
+                        hedgedSearch(searchRequest, options);
+                circuitBreaker.onSuccess();
+                if (searchListener != null) {
+                    searchListener.onSearch(System.currentTimeMillis() - start);
+                }
+                return response;
             } catch (IOException e) {
                 lastError = e;
-                Thread.sleep(elasticConnection.getConnectionRetryBackoff());
+            } catch (ElasticsearchStatusException e) {
+                if (!isRetryable(e.status())) {
+                    //the cluster answered: a half open circuit must be closed, or every caller would keep waiting
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                lastError = e;
             }
+            circuitBreaker.onFailure();
+            if (i < maxTrials - 1) {
+                long delay = elasticConnection.getBackoff().delayMs(i);
+                logger.warn("search failed ({}), retrying in {} ms", lastError.getMessage(), delay);
+                if (searchListener != null) {
+                    searchListener.onRetry();
+                }
+                Thread.sleep(delay);
+            }
+        }
+        if (lastError instanceof IOException) {
+            throw (IOException) lastError;
         }
-        throw lastError;
+        throw (RuntimeException) lastError;
+    }
+
+    //rejections and unavailability are transient, any other error status would fail again
+    private boolean isRetryable(RestStatus status) {
+        switch (status) {
+            case TOO_MANY_REQUESTS:
+            case BAD_GATEWAY:
+            case SERVICE_UNAVAILABLE:
+            case GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void awaitCircuitBreaker(CircuitBreaker circuitBreaker) throws InterruptedException {
+        long wait;
+        while ((wait = circuitBreaker.acquire()) > 0) {
+            logger.warn("elasticsearch circuit breaker is open, pausing for {} ms", wait);
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Sends the search and, if it is still running after the hedging delay, a duplicate of it: the first successful
+     * response wins and the other request is cancelled. The low level client rotates over the available nodes,
+     * so the duplicate is sent to a different node than the original one whenever more than one node is available.
+     */
+    private SearchResponse hedgedSearch(SearchRequest searchRequest, RequestOptions options) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long hedgeDelay = hedgingPolicy.hedgeDelayMs();
+
+        CompletableFuture<SearchResponse> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Cancellable> requests = new ArrayList<>();
+        requests.add(searchAsync(searchRequest, options, winner, pending));
+        try {
+            SearchResponse response;
+            if (hedgeDelay < 0) {
+                response = winner.get();
+            } else {
+                try {
+                    response = winner.get(hedgeDelay, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    logger.debug("search still running after {} ms, sending a hedged request", hedgeDelay);
+                    pending.incrementAndGet();
+                    requests.add(searchAsync(searchRequest, options, winner, pending));
+                    response = winner.get();
+                }
+            }
+            hedgingPolicy.record(System.currentTimeMillis() - start);
+            return response;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            requests.forEach(Cancellable::cancel);
+        }
+    }
+
+    private Cancellable searchAsync(SearchRequest searchRequest, RequestOptions options,
+                                    CompletableFuture<SearchResponse> winner, AtomicInteger pending) {
+        return elasticConnection.getClient().searchAsync(searchRequest, options, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                winner.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                //the search fails only when all the sent requests failed
+                if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                }
+            }
+        });
     }
 
     public List<String> catIndices(String prefix) {
@@ -214,7 +695,102 @@ public final class ElasticRepository {
         }
     }
 
+    public int getPageSize() {
+        return pageSize;
+    }
+
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * Lean fetch mode: page searches neither count total hits nor compute scores,
+     * and the response is trimmed (filter_path) to the fields actually read by the connector.
+     */
+    public void setLeanFetch(boolean leanFetch) {
+        this.leanFetch = leanFetch;
+        updateRequestOptions();
+    }
+
+    /**
+     * Content type requested for search responses (json, smile or cbor). Binary formats are decoded by the
+     * matching parser of the client and produce the same documents as json.
+     */
+    public void setResponseFormat(XContentType responseFormat) {
+        this.responseFormat = Objects.requireNonNull(responseFormat);
+        updateRequestOptions();
+    }
+
+    /**
+     * Enables hedged searches (null disables them).
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Settle window: only documents with a cursor (date) older than now minus the given delay are read,
+     * 0 disables it.
+     */
+    public void setCursorSettleMs(long cursorSettleMs) {
+        this.cursorSettleMs = cursorSettleMs;
+    }
+
+    /**
+     * Maximum number of ids of documents sharing the last cursor value kept in the cursor, 0 disables them
+     * and the next search strictly starts after the cursor value.
+     */
+    public void setMaxBoundaryIds(int maxBoundaryIds) {
+        this.maxBoundaryIds = maxBoundaryIds;
+    }
+
+    /**
+     * Docvalue projection: page searches do not fetch the source and the documents are built from the doc values
+     * of the given fields (the cursor fields are always included). An empty list fetches the source.
+     */
+    public void setDocValueFields(List<String> fields) {
+        List<String> projection = new ArrayList<>();
+        if (!fields.isEmpty()) {
+            if (!cursorSearchField.isEmpty()) {
+                projection.add(cursorSearchField);
+            }
+            if (secondaryCursorSearchField != null) {
+                projection.add(secondaryCursorSearchField);
+            }
+            fields.stream().filter(field -> !projection.contains(field)).forEach(projection::add);
+        }
+        this.docValueFields = projection;
+    }
+
+    /**
+     * Query (json query DSL) that all the read documents must match, added as a non scoring filter to every
+     * search (null reads all the documents).
+     */
+    public void setQueryFilter(String query) {
+        this.queryFilter = query == null ? null : wrapperQuery(query);
+    }
+
+    /**
+     * Listener notified of the latency, response size and retries of the searches, and of the timings of the pages
+     * (null disables it).
+     */
+    public void setSearchListener(SearchListener searchListener) {
+        this.searchListener = searchListener;
+        updateRequestOptions();
+    }
+
+    private void updateRequestOptions() {
+        RequestOptions.Builder options = RequestOptions.DEFAULT.toBuilder();
+        if (searchListener != null) {
+            options.setHttpAsyncResponseConsumerFactory(new CountingResponseConsumerFactory(searchListener));
+        }
+        if (responseFormat != XContentType.JSON) {
+            options.addHeader("Accept", responseFormat.mediaType());
+        }
+        searchOptions = options.build();
+        if (leanFetch) {
+            options.addParameter("filter_path", LEAN_FILTER_PATH);
+        }
+        pageSearchOptions = options.build();
+    }
 }
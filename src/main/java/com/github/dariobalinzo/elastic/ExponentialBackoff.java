@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the delay before the n-th retry is random in [0, min(max, base * 2^n)],
+ * so that tasks failing at the same time do not retry in lockstep.
+ */
+public class ExponentialBackoff {
+    private final long baseMs;
+    private final long maxMs;
+
+    public ExponentialBackoff(long baseMs, long maxMs) {
+        this.baseMs = baseMs;
+        this.maxMs = Math.max(baseMs, maxMs);
+    }
+
+    public long delayMs(int attempt) {
+        return ThreadLocalRandom.current().nextLong(ceilingMs(attempt) + 1);
+    }
+
+    long ceilingMs(int attempt) {
+        int shift = Math.min(attempt, 30);
+        long ceiling = baseMs << shift;
+        return ceiling < 0 || ceiling > maxMs ? maxMs : ceiling;
+    }
+}
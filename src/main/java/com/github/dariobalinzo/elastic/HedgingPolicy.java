@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a search is slow enough to be hedged: a duplicate request is sent once the search has been running
+ * longer than the configured percentile of the recent search latencies (a rolling window of the last samples).
+ */
+public class HedgingPolicy {
+    static final int WINDOW_SIZE = 1024;
+    static final int MIN_SAMPLES = 32;
+
+    private final double percentile;
+    private final long minDelayMs;
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int next = 0;
+    private int count = 0;
+
+    public HedgingPolicy(double percentile, long minDelayMs) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile should be in (0, 100]");
+        }
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+    }
+
+    public synchronized void record(long latencyMs) {
+        latencies[next] = latencyMs;
+        next = (next + 1) % WINDOW_SIZE;
+        count = Math.min(count + 1, WINDOW_SIZE);
+    }
+
+    /**
+     * @return the delay after which a search should be hedged, or -1 if there are not enough samples yet
+     */
+    public synchronized long hedgeDelayMs() {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+        return Math.max(minDelayMs, sorted[Math.max(rank, 0)]);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.elastic;
+
+/**
+ * Notified by the repository of the searches sent to elasticsearch. Calls may come from the http client threads,
+ * implementations must be thread safe.
+ */
+public interface SearchListener {
+
+    /**
+     * A search (including its hedged duplicate, if any) completed successfully.
+     */
+    void onSearch(long latencyMs);
+
+    /**
+     * Size of a search response body, as received on the wire (before decompression).
+     */
+    void onResponseBytes(long bytes);
+
+    /**
+     * A search failed with a transient error and is going to be sent again.
+     */
+    void onRetry();
+
+    /**
+     * A page of documents was read: time spent building its request, waiting for the response (retries included)
+     * and decoding the sources of its hits, in nanoseconds.
+     */
+    void onPage(long buildNanos, long waitNanos, long decodeNanos);
+}
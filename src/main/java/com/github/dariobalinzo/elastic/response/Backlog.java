@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.elastic.response;
+
+public class Backlog {
+    private final long count;
+    private final boolean capped;
+    private final double maxCursor;
+
+    public Backlog(long count, boolean capped, double maxCursor) {
+        this.count = count;
+        this.capped = capped;
+        this.maxCursor = maxCursor;
+    }
+
+    /**
+     * Number of documents after the cursor, a lower bound if capped.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isCapped() {
+        return capped;
+    }
+
+    /**
+     * Max value of the cursor field among the documents after the cursor (epoch millis for dates),
+     * NaN if there is none.
+     */
+    public double getMaxCursor() {
+        return maxCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "Backlog{" +
+                "count=" + count +
+                ", capped=" + capped +
+                ", maxCursor=" + maxCursor +
+                '}';
+    }
+}
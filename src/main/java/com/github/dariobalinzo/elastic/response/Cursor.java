@@ -1,17 +1,33 @@
 package com.github.dariobalinzo.elastic.response;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Cursor {
     private final String primaryCursor;
     private final String secondaryCursor;
+    private final List<String> boundaryIds;
 
     public Cursor(String primaryCursor, String secondaryCursor) {
-        this.primaryCursor = primaryCursor;
-        this.secondaryCursor = secondaryCursor;
+        this(primaryCursor, secondaryCursor, Collections.emptyList());
     }
 
     public Cursor(String primaryCursor) {
+        this(primaryCursor, null, Collections.emptyList());
+    }
+
+    private Cursor(String primaryCursor, String secondaryCursor, List<String> boundaryIds) {
         this.primaryCursor = primaryCursor;
-        this.secondaryCursor = null;
+        this.secondaryCursor = secondaryCursor;
+        this.boundaryIds = Collections.unmodifiableList(boundaryIds);
+    }
+
+    /**
+     * A cursor including its own value: the documents with the given ids, all having the cursor value,
+     * were already read and are excluded from the next search.
+     */
+    public static Cursor withBoundaryIds(String primaryCursor, List<String> boundaryIds) {
+        return new Cursor(primaryCursor, null, boundaryIds);
     }
 
     public String getPrimaryCursor() {
@@ -22,6 +38,10 @@ public class Cursor {
         return secondaryCursor;
     }
 
+    public List<String> getBoundaryIds() {
+        return boundaryIds;
+    }
+
     public static Cursor empty() {
         return new Cursor(null, null);
     }
@@ -31,6 +51,7 @@ public class Cursor {
         return "Cursor{" +
                 "primaryCursor='" + primaryCursor + '\'' +
                 ", secondaryCursor='" + secondaryCursor + '\'' +
+                ", boundaryIds=" + boundaryIds +
                 '}';
     }
 }
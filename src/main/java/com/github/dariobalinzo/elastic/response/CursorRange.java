@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.elastic.response;
+
+/**
+ * Min and max of a numeric or date cursor field. Dates are in epoch millis, the max is also kept as formatted
+ * by the field (the same as a cursor value read from a document).
+ */
+public class CursorRange {
+    public static final String EPOCH_MILLIS = "epoch_millis";
+
+    private final long min;
+    private final long max;
+    private final String maxValue;
+
+    public CursorRange(long min, long max) {
+        this(min, max, String.valueOf(max));
+    }
+
+    public CursorRange(long min, long max, String maxValue) {
+        this.min = min;
+        this.max = max;
+        this.maxValue = maxValue;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * The max as formatted by the field, to be used as a cursor value.
+     */
+    public String getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Format of the bounds computed from min and max in range queries: epoch millis when the field formats its
+     * values (a date with a custom format may not parse them otherwise), null for plain numbers.
+     */
+    public String getBoundsFormat() {
+        return maxValue.equals(String.valueOf(max)) ? null : EPOCH_MILLIS;
+    }
+
+    @Override
+    public String toString() {
+        return "CursorRange{" +
+                "min=" + min +
+                ", max=" + max +
+                ", maxValue=" + maxValue +
+                '}';
+    }
+}
@@ -23,11 +23,24 @@ public class PageResult {
     private final String index;
     private final List<Map<String, Object>> documents;
     private final Cursor lastCursor;
+    private final List<String> primaryCursors;
+    private final List<String> secondaryCursors;
 
     public PageResult(String index, List<Map<String, Object>> documents, Cursor cursor) {
+        this(index, documents, cursor, null, null);
+    }
+
+    /**
+     * @param primaryCursors   cursor value of each document, as read when the page was fetched
+     * @param secondaryCursors secondary cursor value of each document, null without a secondary cursor field
+     */
+    public PageResult(String index, List<Map<String, Object>> documents, Cursor cursor,
+                      List<String> primaryCursors, List<String> secondaryCursors) {
         this.index = index;
         this.documents = documents;
         this.lastCursor = cursor;
+        this.primaryCursors = primaryCursors;
+        this.secondaryCursors = secondaryCursors;
     }
 
     public List<Map<String, Object>> getDocuments() {
@@ -41,4 +54,12 @@ public class PageResult {
     public String getIndex() {
         return index;
     }
+
+    public String getPrimaryCursor(int document) {
+        return primaryCursors.get(document);
+    }
+
+    public String getSecondaryCursor(int document) {
+        return secondaryCursors == null ? null : secondaryCursors.get(document);
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import com.github.dariobalinzo.elastic.response.Cursor;
+import com.github.dariobalinzo.elastic.response.CursorRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A slice (lower, upper] of the cursor field range of an index, read independently during the backfill.
+ * The first window has no lower bound and the last one ends at the max value found when the backfill was planned.
+ * The bounds are numbers (epoch millis for dates), while the cursor holds the values read from the documents.
+ */
+class BackfillWindow {
+    private final int id;
+    private final String lowerBound;
+    private final String upperBound;
+    private Cursor cursor;
+    private boolean done;
+
+    BackfillWindow(int id, String lowerBound, String upperBound) {
+        this.id = id;
+        this.cursor = Cursor.empty();
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    static List<BackfillWindow> split(CursorRange range, int count) {
+        List<BackfillWindow> windows = new ArrayList<>(count);
+        long width = range.getMax() - range.getMin();
+        for (int i = 0; i < count; i++) {
+            String lower = i == 0 ? null : String.valueOf(bound(range, width, count, i));
+            String upper = String.valueOf(bound(range, width, count, i + 1));
+            windows.add(new BackfillWindow(i, lower, upper));
+        }
+        return windows;
+    }
+
+    private static long bound(CursorRange range, long width, int count, int i) {
+        return i == count ? range.getMax() : range.getMin() + width / count * i;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    String getLowerBound() {
+        return lowerBound;
+    }
+
+    String getUpperBound() {
+        return upperBound;
+    }
+
+    Cursor getCursor() {
+        return cursor;
+    }
+
+    void setCursor(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    void setDone(boolean done) {
+        this.done = done;
+    }
+}
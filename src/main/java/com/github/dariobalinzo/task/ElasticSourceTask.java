@@ -19,26 +19,45 @@ package com.github.dariobalinzo.task;
 import com.github.dariobalinzo.ElasticSourceConnectorConfig;
 import com.github.dariobalinzo.Version;
 import com.github.dariobalinzo.elastic.CursorField;
+import com.github.dariobalinzo.elastic.DataNodeSelector;
 import com.github.dariobalinzo.elastic.ElasticConnection;
 import com.github.dariobalinzo.elastic.ElasticConnectionBuilder;
+import com.github.dariobalinzo.elastic.CursorPosition;
 import com.github.dariobalinzo.elastic.ElasticRepository;
+import com.github.dariobalinzo.elastic.HedgingPolicy;
+import com.github.dariobalinzo.elastic.response.Backlog;
 import com.github.dariobalinzo.elastic.response.Cursor;
+import com.github.dariobalinzo.elastic.response.CursorRange;
 import com.github.dariobalinzo.elastic.response.PageResult;
 import com.github.dariobalinzo.filter.BlacklistFilter;
 import com.github.dariobalinzo.filter.DocumentFilter;
 import com.github.dariobalinzo.filter.JsonCastFilter;
 import com.github.dariobalinzo.filter.WhitelistFilter;
 import com.github.dariobalinzo.schema.*;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
+import org.apache.kafka.connect.source.TransactionContext;
+import org.elasticsearch.xcontent.XContentType;
+import org.elasticsearch.client.NodeSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.github.dariobalinzo.elastic.ElasticJsonNaming.removeKeywordSuffix;
@@ -47,8 +66,18 @@ public class ElasticSourceTask extends SourceTask {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticSourceTask.class);
     private static final String INDEX = "index";
+    private static final String SHARD = "shard";
+    private static final String BACKFILL_WINDOW = "backfill_window";
+    private static final String RECONCILIATION = "reconciliation";
+    private static final int TOMBSTONE_QUEUE_SIZE = 10_000;
+    //most pages read from an index in one poll while its estimated backlog lasts
+    private static final int BACKLOG_MAX_PAGES = 10;
+    private static final String BACKFILL_MIN = "backfill_min";
+    private static final String BACKFILL_MAX = "backfill_max";
+    private static final String BACKFILL_MAX_VALUE = "backfill_max_value";
     static final String POSITION = "position";
     static final String POSITION_SECONDARY = "position_secondary";
+    static final String POSITION_IDS = "position_ids";
 
 
     private final OffsetSerializer offsetSerializer = new OffsetSerializer();
@@ -66,9 +95,41 @@ public class ElasticSourceTask extends SourceTask {
     private String secondaryCursorSearchField;
     private CursorField secondaryCursorField;
     private int pollingMs;
+    private boolean probeEnabled;
+    private boolean seqNoMode;
+    private boolean offsetsPerPage;
+    private long seqNoVisibilityDelayMs;
+    private final Map<String, SeqNoCheckpoint> seqNoCheckpoints = new HashMap<>();
+    private int backfillWindows;
+    private ExecutorService backfillExecutor;
+    private final Set<String> backfillChecked = new HashSet<>();
+    private final Map<String, List<BackfillWindow>> backfills = new HashMap<>();
+    private final Map<String, CursorRange> backfillRanges = new HashMap<>();
+    private String connectorName;
+    private Reconciler reconciler;
+    private ScheduledExecutorService reconciliationExecutor;
+    private final TombstoneQueue tombstones = new TombstoneQueue(TOMBSTONE_QUEUE_SIZE);
+    private final Set<String> idleIndices = new HashSet<>();
     private final Map<String, Cursor> lastCursor = new HashMap<>();
-    private final Map<String, Integer> sent = new HashMap<>();
+    private final Map<String, Map<String, String>> indexPartitions = new HashMap<>();
+    private ElasticSourceTaskMetrics metrics;
+    private long backlogIntervalMs;
+    private int backlogMaxCount;
+    private long nextBacklogEstimate;
+    //indices in poll order: the ones furthest behind at the last backlog estimate come first
+    private List<String> pollOrder;
+    //documents left to read from each index according to the last backlog estimate
+    private final Map<String, Long> backlogs = new HashMap<>();
+    private int pageSize;
+    //one document out of stageTimingSampling is timed stage by stage (0 disables it)
+    private int stageTimingSampling;
+    private int untimedDocuments;
+    private long stageTimingLogIntervalMs;
+    private long nextStageTimingLog;
+    private ProgressReporter progress;
     private ElasticRepository elasticRepository;
+    //set only when the worker runs with exactly once support and transaction.boundary=connector
+    private TransactionContext transactionContext;
 
     private final List<DocumentFilter> documentFilters = new ArrayList<>();
 
@@ -84,6 +145,7 @@ public class ElasticSourceTask extends SourceTask {
         } catch (ConfigException e) {
             throw new ConnectException("Couldn't start ElasticSourceTask due to configuration error", e);
         }
+        connectorName = properties.getOrDefault("name", "elastic-source");
 
         indices = Arrays.asList(config.getString(ElasticSourceTaskConfig.INDICES_CONFIG).split(","));
         if (indices.isEmpty()) {
@@ -99,10 +161,100 @@ public class ElasticSourceTask extends SourceTask {
         secondaryCursorSearchField = config.getString(ElasticSourceConnectorConfig.SECONDARY_INCREMENTING_FIELD_NAME_CONFIG);
         secondaryCursorField = secondaryCursorSearchField == null ? null : new CursorField(secondaryCursorSearchField);
         pollingMs = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.POLL_INTERVAL_MS_CONFIG));
+        probeEnabled = Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.POLL_PROBE_ENABLED_CONFIG));
+        seqNoMode = ElasticSourceConnectorConfig.MODE_SEQ_NO.equals(
+                config.getString(ElasticSourceConnectorConfig.MODE_CONFIG)
+        );
+        backlogIntervalMs = Long.parseLong(config.getString(ElasticSourceConnectorConfig.BACKLOG_INTERVAL_CONFIG));
+        backlogMaxCount = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.BACKLOG_MAX_COUNT_CONFIG));
+        if (backlogIntervalMs > 0 && seqNoMode) {
+            logger.warn("backlog estimation is not supported in seq_no mode, it will be disabled");
+            backlogIntervalMs = 0;
+        }
+        pollOrder = indices;
+        stageTimingSampling = Integer.parseInt(
+                config.getString(ElasticSourceConnectorConfig.STAGE_TIMING_SAMPLING_CONFIG)
+        );
+        stageTimingLogIntervalMs = Long.parseLong(
+                config.getString(ElasticSourceConnectorConfig.STAGE_TIMING_LOG_INTERVAL_CONFIG)
+        );
+        nextStageTimingLog = System.currentTimeMillis() + stageTimingLogIntervalMs;
+        progress = new ProgressReporter(
+                Long.parseLong(config.getString(ElasticSourceConnectorConfig.PROGRESS_LOG_INTERVAL_CONFIG)),
+                System.currentTimeMillis()
+        );
+        offsetsPerPage = Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.OFFSETS_PER_PAGE_CONFIG));
+        seqNoVisibilityDelayMs = Long.parseLong(
+                config.getString(ElasticSourceConnectorConfig.SEQ_NO_VISIBILITY_DELAY_CONFIG)
+        );
+
+        backfillWindows = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.BACKFILL_WINDOWS_CONFIG));
+        if (backfillWindows > 0 && secondaryCursorSearchField != null) {
+            logger.warn("backfill is not supported with a secondary incrementing field, it will be disabled");
+            backfillWindows = 0;
+        }
+        if (backfillWindows > 0) {
+            backfillExecutor = Executors.newFixedThreadPool(
+                    Integer.parseInt(config.getString(ElasticSourceConnectorConfig.BACKFILL_THREADS_CONFIG))
+            );
+        }
 
+        metrics = new ElasticSourceTaskMetrics(
+                connectorName,
+                config.getString(ElasticSourceTaskConfig.TASK_ID_CONFIG)
+        );
         initConnectorFilters();
         initConnectorFieldConverter();
         initEsConnection();
+        initReconciliation();
+        initTransactionContext();
+    }
+
+    private void initTransactionContext() {
+        try {
+            transactionContext = context.transactionContext();
+        } catch (NoSuchMethodError e) {
+            //workers older than 3.3 have no exactly once support for source connectors
+            transactionContext = null;
+        }
+        if (transactionContext != null) {
+            logger.info("exactly once delivery enabled: each page of documents is committed in its own transaction");
+        }
+    }
+
+    /**
+     * Ends the transaction with the last record added, so that a page of documents and the offset of its last
+     * record are written atomically.
+     */
+    private void commitPage(List<SourceRecord> results) {
+        if (transactionContext != null && !results.isEmpty()) {
+            transactionContext.commitTransaction(results.get(results.size() - 1));
+        }
+    }
+
+    private void initReconciliation() {
+        long interval = Long.parseLong(config.getString(ElasticSourceConnectorConfig.RECONCILIATION_INTERVAL_CONFIG));
+        if (interval <= 0) {
+            return;
+        }
+        if (seqNoMode) {
+            logger.warn("deletion reconciliation is not supported in seq_no mode, it will be disabled");
+            return;
+        }
+        String directory = config.getString(ElasticSourceConnectorConfig.RECONCILIATION_DIR_CONFIG);
+        if (directory == null) {
+            logger.warn("no {} set, the reconciliation snapshots are kept in java.io.tmpdir: deletions made while " +
+                    "the task restarts or moves to another worker will not be detected",
+                    ElasticSourceConnectorConfig.RECONCILIATION_DIR_CONFIG);
+        }
+        Path base = directory == null ?
+                Paths.get(System.getProperty("java.io.tmpdir"), "elastic-source-reconciliation") :
+                Paths.get(directory);
+        //connectors sharing the directory (and maybe the topic prefix) must not share the snapshots
+        Path path = base.resolve(connectorName.replaceAll("[^A-Za-z0-9._-]", "_"));
+        reconciler = new Reconciler(elasticRepository::scanCursorValues, path, topic, Reconciler.RUN_SIZE);
+        reconciliationExecutor = Executors.newSingleThreadScheduledExecutor();
+        reconciliationExecutor.scheduleWithFixedDelay(this::reconcileIndices, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     private void initConnectorFilters() {
@@ -153,7 +305,7 @@ public class ElasticSourceTask extends SourceTask {
         String esUser = config.getString(ElasticSourceConnectorConfig.ES_USER_CONF);
         String esPwd = config.getString(ElasticSourceConnectorConfig.ES_PWD_CONF);
 
-        int batchSize = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.BATCH_MAX_ROWS_CONFIG));
+        pageSize = Integer.parseInt(config.getString(ElasticSourceConnectorConfig.BATCH_MAX_ROWS_CONFIG));
 
         int maxConnectionAttempts = Integer.parseInt(config.getString(
                 ElasticSourceConnectorConfig.CONNECTION_ATTEMPTS_CONFIG
@@ -164,7 +316,52 @@ public class ElasticSourceTask extends SourceTask {
         ElasticConnectionBuilder connectionBuilder = new ElasticConnectionBuilder(esHost, esPort)
                 .withProtocol(esScheme)
                 .withMaxAttempts(maxConnectionAttempts)
-                .withBackoff(connectionRetryBackoff);
+                .withBackoff(connectionRetryBackoff)
+                .withMaxBackoff(Long.parseLong(config.getString(ElasticSourceConnectorConfig.CONNECTION_BACKOFF_MAX_CONFIG)))
+                .withCircuitBreaker(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_CIRCUIT_BREAKER_THRESHOLD_CONFIG)),
+                        Long.parseLong(config.getString(ElasticSourceConnectorConfig.ES_CIRCUIT_BREAKER_OPEN_CONFIG))
+                )
+                .withCompression(Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_COMPRESSION_CONFIG)))
+                .withMaxConnections(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_MAX_CONNECTIONS_PER_ROUTE_CONFIG)),
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_MAX_CONNECTIONS_TOTAL_CONFIG))
+                )
+                .withTimeouts(
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_CONNECT_TIMEOUT_CONFIG)),
+                        Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SOCKET_TIMEOUT_CONFIG))
+                )
+                .withSharing(Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_CONNECTION_SHARED_CONFIG)));
+
+        String ioThreads = config.getString(ElasticSourceConnectorConfig.ES_IO_THREADS_CONFIG);
+        if (ioThreads != null) {
+            connectionBuilder.withIoThreadCount(Integer.parseInt(ioThreads));
+        }
+
+        String keepAlive = config.getString(ElasticSourceConnectorConfig.ES_KEEPALIVE_CONFIG);
+        if (keepAlive != null) {
+            connectionBuilder.withKeepAlive(Long.parseLong(keepAlive));
+        }
+
+        if (Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_ENABLED_CONFIG))) {
+            connectionBuilder.withSniffer(
+                    Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_INTERVAL_CONFIG)),
+                    Integer.parseInt(config.getString(ElasticSourceConnectorConfig.ES_SNIFFER_FAILURE_DELAY_CONFIG))
+            );
+        }
+
+        switch (config.getString(ElasticSourceConnectorConfig.ES_NODE_SELECTOR_CONFIG)) {
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_DATA:
+                connectionBuilder.withNodeSelector(new DataNodeSelector());
+                break;
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_SKIP_DEDICATED_MASTERS:
+                connectionBuilder.withNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS);
+                break;
+            case ElasticSourceConnectorConfig.NODE_SELECTOR_ANY:
+            default:
+                connectionBuilder.withNodeSelector(NodeSelector.ANY);
+                break;
+        }
 
         String truststore = config.getString(ElasticSourceConnectorConfig.ES_TRUSTSTORE_CONF);
         String truststorePass = config.getString(ElasticSourceConnectorConfig.ES_TRUSTSTORE_PWD_CONF);
@@ -188,7 +385,31 @@ public class ElasticSourceTask extends SourceTask {
         }
 
         elasticRepository = new ElasticRepository(es, cursorSearchField, secondaryCursorSearchField);
-        elasticRepository.setPageSize(batchSize);
+        elasticRepository.setPageSize(pageSize);
+        elasticRepository.setSearchListener(metrics);
+        elasticRepository.setCursorSettleMs(Long.parseLong(
+                config.getString(ElasticSourceConnectorConfig.CURSOR_SETTLE_CONFIG)
+        ));
+        elasticRepository.setMaxBoundaryIds(Integer.parseInt(
+                config.getString(ElasticSourceConnectorConfig.CURSOR_DEDUP_MAX_IDS_CONFIG)
+        ));
+        elasticRepository.setQueryFilter(config.getString(ElasticSourceConnectorConfig.QUERY_FILTER_CONFIG));
+        String docValueFields = config.getString(ElasticSourceConnectorConfig.FETCH_DOCVALUE_FIELDS_CONFIG);
+        if (docValueFields != null) {
+            elasticRepository.setDocValueFields(Arrays.asList(docValueFields.split(";")));
+        }
+        elasticRepository.setLeanFetch(Boolean.parseBoolean(
+                config.getString(ElasticSourceConnectorConfig.FETCH_LEAN_CONFIG)
+        ));
+        if (Boolean.parseBoolean(config.getString(ElasticSourceConnectorConfig.ES_HEDGING_ENABLED_CONFIG))) {
+            elasticRepository.setHedgingPolicy(new HedgingPolicy(
+                    Double.parseDouble(config.getString(ElasticSourceConnectorConfig.ES_HEDGING_PERCENTILE_CONFIG)),
+                    Long.parseLong(config.getString(ElasticSourceConnectorConfig.ES_HEDGING_MIN_DELAY_CONFIG))
+            ));
+        }
+        elasticRepository.setResponseFormat(XContentType.valueOf(
+                config.getString(ElasticSourceConnectorConfig.ES_RESPONSE_FORMAT_CONFIG).toUpperCase(Locale.ROOT)
+        ));
     }
 
 
@@ -196,21 +417,25 @@ public class ElasticSourceTask extends SourceTask {
     @Override
     public List<SourceRecord> poll() {
         List<SourceRecord> results = new ArrayList<>();
+        pollTombstones(results);
         try {
-            for (String index : indices) {
-                if (!stopping.get()) {
-                    logger.info("fetching from {}", index);
-                    Cursor lastValue = fetchLastOffset(index);
-                    logger.info("found last value {}", lastValue);
-                    PageResult pageResult = secondaryCursorSearchField == null ?
-                            elasticRepository.searchAfter(index, lastValue) :
-                            elasticRepository.searchAfterWithSecondarySort(index, lastValue);
-                    parseResult(pageResult, results);
-                    logger.info("index {} total messages: {} ", index, sent.get(index));
+            if (backlogIntervalMs > 0) {
+                estimateBacklogs();
+            }
+            for (String index : pollOrder) {
+                if (!stopping.get() && seqNoMode) {
+                    pollSeqNo(index, results);
+                } else if (!stopping.get() && backfillWindows > 0 && pollBackfill(index, results)) {
+                    logTotal(index);
+                } else if (!stopping.get()) {
+                    pollIndex(index, results);
+                    logTotal(index);
                 }
             }
+            logStageTimings();
+            logProgress(results.size());
             if (results.isEmpty()) {
-                logger.info("no data found, sleeping for {} ms", pollingMs);
+                logger.debug("no data found, sleeping for {} ms", pollingMs);
                 Thread.sleep(pollingMs);
             }
 
@@ -220,6 +445,374 @@ public class ElasticSourceTask extends SourceTask {
         return results;
     }
 
+    /**
+     * Reads a page from the index, and more while the last backlog estimate says it is behind: its backlog is
+     * consumed by the documents read, the index gets extra pages in this poll until it is or the page is not full.
+     */
+    private void pollIndex(String index, List<SourceRecord> results) throws IOException, InterruptedException {
+        for (int page = 0; page < BACKLOG_MAX_PAGES && !stopping.get(); page++) {
+            logger.debug("fetching from {}", index);
+            long lookupStart = System.nanoTime();
+            Cursor lastValue = fetchLastOffset(index);
+            metrics.recordStage(PollStage.OFFSET_LOOKUP, System.nanoTime() - lookupStart);
+            logger.debug("found last value {}", lastValue);
+            if (shouldSkip(index, lastValue)) {
+                logger.debug("no new data found by probe in {}", index);
+                return;
+            }
+            PageResult pageResult = secondaryCursorSearchField == null ?
+                    elasticRepository.searchAfter(index, lastValue) :
+                    elasticRepository.searchAfterWithSecondarySort(index, lastValue);
+            updateIdleState(pageResult);
+            parseResult(pageResult, lastValue, results);
+            if (!isBehind(index, pageResult.getDocuments().size())) {
+                return;
+            }
+        }
+    }
+
+    private boolean isBehind(String index, int documents) {
+        long backlog = backlogs.getOrDefault(index, 0L) - documents;
+        backlogs.put(index, Math.max(backlog, 0L));
+        return documents >= pageSize && backlog > 0;
+    }
+
+    private void logTotal(String index) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("index {} total messages: {} ", index, metrics.recordsSent(index));
+        }
+    }
+
+    private void logProgress(int records) {
+        progress.recordPoll(records);
+        String report = progress.report(System.currentTimeMillis());
+        if (report != null) {
+            logger.info(report);
+        }
+    }
+
+    private void logStageTimings() {
+        if (stageTimingLogIntervalMs > 0 && System.currentTimeMillis() >= nextStageTimingLog) {
+            nextStageTimingLog = System.currentTimeMillis() + stageTimingLogIntervalMs;
+            logger.info(metrics.stageSummary());
+        }
+    }
+
+    private void estimateBacklogs() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now < nextBacklogEstimate) {
+            return;
+        }
+        nextBacklogEstimate = now + backlogIntervalMs;
+        for (String index : indices) {
+            try {
+                Backlog backlog = elasticRepository.backlog(index, fetchLastOffset(index), backlogMaxCount);
+                logger.debug("index {} backlog: {}", index, backlog);
+                metrics.recordBacklog(index, backlog);
+                backlogs.put(index, backlog.getCount());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("error estimating the backlog of index {}", index, e);
+                backlogs.put(index, 0L);
+            }
+        }
+        List<String> order = new ArrayList<>(indices);
+        order.sort(Comparator.comparingLong((String index) -> backlogs.get(index)).reversed());
+        pollOrder = order;
+    }
+
+    //runs on the reconciliation thread: blocks when poll does not keep up with the tombstones
+    private void reconcileIndices() {
+        for (String index : indices) {
+            if (stopping.get()) {
+                return;
+            }
+            if (tombstones.isPending(index)) {
+                continue;
+            }
+            Map<String, String> partition = new HashMap<>();
+            partition.put(INDEX, index);
+            partition.put(RECONCILIATION, "deletes");
+            try {
+                reconciler.reconcile(
+                        index,
+                        document -> offsetSerializer.toStringOffset(cursorField, secondaryCursorField, index, document),
+                        key -> {
+                            try {
+                                tombstones.put(index, new SourceRecord(partition, Collections.emptyMap(), topic + index,
+                                        Schema.STRING_SCHEMA, key, null, null));
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException("interrupted while queueing tombstones", e);
+                            }
+                        }
+                );
+                tombstones.passCompleted(index);
+            } catch (InterruptedException e) {
+                tombstones.passAborted(index);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                tombstones.passAborted(index);
+                logger.error("error reconciling index {}", index, e);
+            }
+        }
+    }
+
+    private void pollTombstones(List<SourceRecord> results) {
+        if (reconciler == null) {
+            return;
+        }
+        if (tombstones.drainTo(results) > 0) {
+            commitPage(results);
+        }
+    }
+
+    //metadata is null when the record was not sent (filtered by a transformation or dropped on error)
+    @Override
+    public void commitRecord(SourceRecord record, RecordMetadata metadata) {
+        if (record.sourcePartition().containsKey(RECONCILIATION)) {
+            tombstones.acked((String) record.sourcePartition().get(INDEX), metadata != null);
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (reconciler != null) {
+            tombstones.promoteAcked(reconciler);
+        }
+    }
+
+    /**
+     * Reads a page from each unfinished backfill window of the index, in parallel.
+     * Returns false when the index is not (or no longer) being backfilled and must be read incrementally.
+     */
+    private boolean pollBackfill(String index, List<SourceRecord> results) throws IOException, InterruptedException {
+        if (!backfills.containsKey(index)) {
+            if (!backfillChecked.add(index) || fetchLastOffset(index).getPrimaryCursor() != null) {
+                return false;
+            }
+            List<BackfillWindow> windows = planBackfill(index);
+            if (windows == null) {
+                return false;
+            }
+            backfills.put(index, windows);
+        }
+
+        List<BackfillWindow> pending = new ArrayList<>();
+        List<Callable<PageResult>> searches = new ArrayList<>();
+        for (BackfillWindow window : backfills.get(index)) {
+            if (!window.isDone()) {
+                pending.add(window);
+                searches.add(() -> elasticRepository.searchAfter(index, window.getCursor(),
+                        window.getLowerBound(), window.getUpperBound(), backfillRanges.get(index).getBoundsFormat()));
+            }
+        }
+        List<Future<PageResult>> pages = backfillExecutor.invokeAll(searches);
+        for (int i = 0; i < pending.size(); i++) {
+            BackfillWindow window = pending.get(i);
+            PageResult pageResult = awaitPage(pages.get(i));
+            if (pageResult.getDocuments().size() < elasticRepository.getPageSize()) {
+                window.setDone(true);
+            }
+            if (!pageResult.getDocuments().isEmpty()) {
+                parseBackfillResult(pageResult, window, results);
+                window.setCursor(pageResult.getLastCursor());
+            }
+        }
+
+        if (pending.stream().allMatch(BackfillWindow::isDone)) {
+            //from now on the index is read incrementally, starting after the max value found by the planning
+            CursorRange range = backfillRanges.remove(index);
+            backfills.remove(index);
+            lastCursor.put(index, new Cursor(range.getMaxValue()));
+            logger.info("backfill of index {} completed, reading incrementally from {}", index, range.getMaxValue());
+        }
+        return true;
+    }
+
+    //windows already (partially) read before a restart keep the range they were planned with
+    private List<BackfillWindow> planBackfill(String index) throws IOException, InterruptedException {
+        List<Map<String, String>> partitions = new ArrayList<>();
+        for (int i = 0; i < backfillWindows; i++) {
+            partitions.add(backfillPartition(index, i));
+        }
+        Map<Map<String, String>, Map<String, Object>> offsets = context.offsetStorageReader().offsets(partitions);
+        if (offsets == null) {
+            offsets = Collections.emptyMap();
+        }
+
+        CursorRange range = offsets.values().stream()
+                .filter(offset -> offset != null && offset.get(BACKFILL_MAX) != null)
+                .findFirst()
+                .map(offset -> new CursorRange(
+                        Long.parseLong((String) offset.get(BACKFILL_MIN)),
+                        Long.parseLong((String) offset.get(BACKFILL_MAX)),
+                        (String) offset.getOrDefault(BACKFILL_MAX_VALUE, offset.get(BACKFILL_MAX))
+                ))
+                .orElse(null);
+        if (range == null) {
+            range = elasticRepository.cursorRange(index);
+        }
+        if (range == null) {
+            logger.info("no data to backfill in {}", index);
+            return null;
+        }
+        logger.info("backfilling index {} in {} windows of {}", index, backfillWindows, range);
+
+        List<BackfillWindow> windows = BackfillWindow.split(range, backfillWindows);
+        for (BackfillWindow window : windows) {
+            Map<String, String> partition = backfillPartition(index, window.getId());
+            Map<String, Object> offset = offsets.get(partition);
+            if (offset != null && offset.get(POSITION) != null) {
+                window.setCursor(offsetSerializer.toCursor(partition, offset));
+            }
+        }
+        backfillRanges.put(index, range);
+        return windows;
+    }
+
+    private PageResult awaitPage(Future<PageResult> page) throws IOException, InterruptedException {
+        try {
+            return page.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Map<String, String> backfillPartition(String index, int window) {
+        Map<String, String> partition = new HashMap<>();
+        partition.put(INDEX, index);
+        partition.put(BACKFILL_WINDOW, String.valueOf(window));
+        return partition;
+    }
+
+    private Map<String, String> backfillOffset(Map<String, String> cursorOffset, CursorRange range) {
+        Map<String, String> offset = new HashMap<>(cursorOffset);
+        offset.put(BACKFILL_MIN, String.valueOf(range.getMin()));
+        offset.put(BACKFILL_MAX, String.valueOf(range.getMax()));
+        offset.put(BACKFILL_MAX_VALUE, range.getMaxValue());
+        return offset;
+    }
+
+    private void parseBackfillResult(PageResult pageResult, BackfillWindow window, List<SourceRecord> results) {
+        String index = pageResult.getIndex();
+        CursorRange range = backfillRanges.get(index);
+        Map<String, String> sourcePartition = backfillPartition(index, window.getId());
+        Map<String, String> pageStartOffset = offsetsPerPage ?
+                backfillOffset(offsetSerializer.toMapOffset(window.getCursor()), range) :
+                null;
+        List<Map<String, Object>> documents = pageResult.getDocuments();
+        CursorPosition position = elasticRepository.position(window.getCursor());
+        Map<String, String> runStartOffset = pageStartOffset;
+        for (int i = 0; i < documents.size(); i++) {
+            Map<String, Object> elasticDocument = documents.get(i);
+            advance(position, pageResult, i);
+            Map<String, String> sourceOffset;
+            if (isPageStartOffset(pageStartOffset, i, documents)) {
+                sourceOffset = pageStartOffset;
+            } else if (isInsideRun(position, pageResult, i)) {
+                if (runStartOffset == null) {
+                    runStartOffset = backfillOffset(offsetSerializer.toMapOffset(window.getCursor()), range);
+                }
+                sourceOffset = runStartOffset;
+            } else {
+                sourceOffset = backfillOffset(toMapOffset(position), range);
+                runStartOffset = sourceOffset;
+            }
+            String key = offsetSerializer.toStringOffset(index, position.getPrimaryCursor(), position.getSecondaryCursor());
+            results.add(toSourceRecord(index, sourcePartition, sourceOffset, key, elasticDocument));
+        }
+        metrics.recordPage(documents.size());
+        progress.recordPage(index, documents.size(), null);
+        if (!documents.isEmpty()) {
+            metrics.recordRecords(index, documents.size());
+            commitPage(results);
+        }
+    }
+
+    //one cursor for each shard: sequence numbers are assigned by the primary of each shard independently
+    private void pollSeqNo(String index, List<SourceRecord> results) throws IOException, InterruptedException {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, Long> checkpoint : elasticRepository.globalCheckpoints(index).entrySet()) {
+            int shard = checkpoint.getKey();
+            String shardKey = index + "/" + shard;
+            long maxSeqNo = seqNoCheckpoints
+                    .computeIfAbsent(shardKey, k -> new SeqNoCheckpoint(seqNoVisibilityDelayMs))
+                    .update(checkpoint.getValue(), now);
+
+            long lookupStart = System.nanoTime();
+            Cursor lastValue = fetchLastSeqNoOffset(index, shard);
+            metrics.recordStage(PollStage.OFFSET_LOOKUP, System.nanoTime() - lookupStart);
+            if (lastValue.getPrimaryCursor() != null && Long.parseLong(lastValue.getPrimaryCursor()) >= maxSeqNo) {
+                continue;
+            }
+            logger.debug("fetching from {} shard {} up to seq_no {}", index, shard, maxSeqNo);
+            PageResult pageResult = elasticRepository.searchAfterSeqNo(index, shard, lastValue, maxSeqNo);
+            lastCursor.put(shardKey, pageResult.getLastCursor());
+            parseSeqNoResult(pageResult, shard, lastValue, results);
+        }
+    }
+
+    private Cursor fetchLastSeqNoOffset(String index, int shard) {
+        Cursor cursor = lastCursor.get(index + "/" + shard);
+        if (cursor != null) {
+            return cursor;
+        }
+        Map<String, Object> offset = context.offsetStorageReader().offset(seqNoPartition(index, shard));
+        return offset == null ? Cursor.empty() : new Cursor((String) offset.get(POSITION));
+    }
+
+    private Map<String, String> seqNoPartition(String index, int shard) {
+        Map<String, String> partition = new HashMap<>();
+        partition.put(INDEX, index);
+        partition.put(SHARD, String.valueOf(shard));
+        return partition;
+    }
+
+    private void parseSeqNoResult(PageResult pageResult, int shard, Cursor lastValue, List<SourceRecord> results) {
+        String index = pageResult.getIndex();
+        Map<String, String> sourcePartition = seqNoPartition(index, shard);
+        Map<String, String> pageStartOffset = offsetsPerPage ? offsetSerializer.toMapOffset(lastValue) : null;
+        List<Map<String, Object>> documents = pageResult.getDocuments();
+        for (int i = 0; i < documents.size(); i++) {
+            Map<String, Object> elasticDocument = documents.get(i);
+            String seqNo = String.valueOf(elasticDocument.get("es-seq-no"));
+            Map<String, String> sourceOffset = isPageStartOffset(pageStartOffset, i, documents) ?
+                    pageStartOffset :
+                    Collections.singletonMap(POSITION, seqNo);
+            //keyed by document: the updates of a document are merged by a compacted topic
+            String key = String.valueOf(elasticDocument.get("es-id"));
+            results.add(toSourceRecord(index, sourcePartition, sourceOffset, key, elasticDocument));
+        }
+        metrics.recordPage(documents.size());
+        progress.recordPage(index, documents.size(), null);
+        if (!documents.isEmpty()) {
+            metrics.recordRecords(index, documents.size());
+            commitPage(results);
+        }
+    }
+
+    //only indices that had nothing new on the last poll are probed: while catching up the probe would be wasted
+    private boolean shouldSkip(String index, Cursor lastValue) throws IOException, InterruptedException {
+        return probeEnabled
+                && idleIndices.contains(index)
+                && !elasticRepository.hasDocumentsAfter(index, lastValue);
+    }
+
+    private void updateIdleState(PageResult pageResult) {
+        if (pageResult.getDocuments().isEmpty()) {
+            idleIndices.add(pageResult.getIndex());
+        } else {
+            idleIndices.remove(pageResult.getIndex());
+        }
+    }
+
     private Cursor fetchLastOffset(String index) {
         //first we check in cache memory the last value
         if (lastCursor.get(index) != null) {
@@ -227,59 +820,167 @@ public class ElasticSourceTask extends SourceTask {
         }
 
         //if cache is empty we check the framework
-        Map<String, Object> offset = context.offsetStorageReader().offset(Collections.singletonMap(INDEX, index));
+        Map<String, Object> offset = context.offsetStorageReader().offset(indexPartition(index));
         if (offset != null) {
-            String primaryCursor = (String) offset.get(POSITION);
-            String secondaryCursor = (String) offset.get(POSITION_SECONDARY);
-            return new Cursor(primaryCursor, secondaryCursor);
+            return offsetSerializer.toCursor(indexPartition(index), offset);
         } else {
             return Cursor.empty();
         }
     }
 
-    private void parseResult(PageResult pageResult, List<SourceRecord> results) {
+    /**
+     * With offsets per page, all the records of a page but the last one share the offset of the start of the page:
+     * if the task stops before the last record is committed, the whole page is read again (at least once delivery).
+     */
+    private boolean isPageStartOffset(Map<String, String> pageStartOffset, int i, List<Map<String, Object>> documents) {
+        return pageStartOffset != null && i < documents.size() - 1;
+    }
+
+    //partitions are immutable, one instance is shared by all the records of an index
+    private Map<String, String> indexPartition(String index) {
+        return indexPartitions.computeIfAbsent(index, i -> Collections.singletonMap(INDEX, i));
+    }
+
+    private void parseResult(PageResult pageResult, Cursor lastValue, List<SourceRecord> results) {
         String index = pageResult.getIndex();
-        for (Map<String, Object> elasticDocument : pageResult.getDocuments()) {
-            Map<String, String> sourcePartition = Collections.singletonMap(INDEX, index);
-            Map<String, String> sourceOffset = offsetSerializer.toMapOffset(
-                    cursorField,
-                    secondaryCursorField,
-                    elasticDocument
-            );
-            String key = offsetSerializer.toStringOffset(
-                    cursorField,
-                    secondaryCursorField,
-                    index,
-                    elasticDocument
-            );
+        List<Map<String, Object>> documents = pageResult.getDocuments();
+        metrics.recordPage(documents.size());
+        if (documents.isEmpty()) {
+            return;
+        }
+        Map<String, String> sourcePartition = indexPartition(index);
+        Map<String, String> pageStartOffset = offsetsPerPage ? offsetSerializer.toMapOffset(lastValue) : null;
+        //the cursor values of each document were read once by the repository, the offset and the key reuse them
+        CursorPosition position = elasticRepository.position(lastValue);
+        Map<String, String> runStartOffset = pageStartOffset;
+        for (int i = 0; i < documents.size(); i++) {
+            Map<String, Object> elasticDocument = documents.get(i);
+            advance(position, pageResult, i);
+            Map<String, String> sourceOffset;
+            if (isPageStartOffset(pageStartOffset, i, documents)) {
+                sourceOffset = pageStartOffset;
+            } else if (isInsideRun(position, pageResult, i)) {
+                if (runStartOffset == null) {
+                    runStartOffset = offsetSerializer.toMapOffset(lastValue);
+                }
+                sourceOffset = runStartOffset;
+            } else {
+                sourceOffset = toMapOffset(position);
+                runStartOffset = sourceOffset;
+            }
+            String key = offsetSerializer.toStringOffset(index, position.getPrimaryCursor(), position.getSecondaryCursor());
+            results.add(toSourceRecord(index, sourcePartition, sourceOffset, key, elasticDocument));
+        }
+        commitPage(results);
+        lastCursor.put(index, pageResult.getLastCursor());
+        metrics.recordRecords(index, documents.size());
+        metrics.recordCursor(index, pageResult.getLastCursor().getPrimaryCursor());
+        progress.recordPage(index, documents.size(), pageResult.getLastCursor().getPrimaryCursor());
+    }
 
-            lastCursor.put(index, pageResult.getLastCursor());
-            sent.merge(index, 1, Integer::sum);
+    private void advance(CursorPosition position, PageResult pageResult, int document) {
+        position.advance(
+                pageResult.getPrimaryCursor(document),
+                pageResult.getSecondaryCursor(document),
+                (String) pageResult.getDocuments().get(document).get("es-id")
+        );
+    }
 
-            documentFilters.forEach(jsonFilter -> jsonFilter.filter(elasticDocument));
+    /**
+     * True if the document is followed, in the same page, by another one with the same cursor value while boundary
+     * ids are kept. Its exact offset would hold the ids read so far for the value, serializing them for each
+     * document of the run is quadratic: it gets the offset before the run instead, the one of the last document
+     * of the run holds all the ids. Resuming from it reads the run again, as with offsets per page.
+     */
+    private boolean isInsideRun(CursorPosition position, PageResult pageResult, int document) {
+        return !position.getBoundaryIds().isEmpty()
+                && document < pageResult.getDocuments().size() - 1
+                && Objects.equals(position.getPrimaryCursor(), pageResult.getPrimaryCursor(document + 1));
+    }
 
-            Schema schema = schemaConverter.convert(elasticDocument, index);
-            Struct struct = structConverter.convert(elasticDocument, schema);
+    private Map<String, String> toMapOffset(CursorPosition position) {
+        return offsetSerializer.toMapOffset(
+                position.getPrimaryCursor(),
+                position.getSecondaryCursor(),
+                position.getBoundaryIds()
+        );
+    }
 
-            SourceRecord sourceRecord = new SourceRecord(
-                    sourcePartition,
-                    sourceOffset,
-                    topic + index,
-                    //KEY
-                    Schema.STRING_SCHEMA,
-                    key,
-                    //VALUE
-                    schema,
-                    struct);
-            results.add(sourceRecord);
+    private SourceRecord toSourceRecord(String index, Map<String, String> sourcePartition,
+                                        Map<String, String> sourceOffset, String key,
+                                        Map<String, Object> elasticDocument) {
+        if (sampleDocument()) {
+            return timedSourceRecord(index, sourcePartition, sourceOffset, key, elasticDocument);
         }
+        long start = System.nanoTime();
+        documentFilters.forEach(jsonFilter -> jsonFilter.filter(elasticDocument));
+        long filtered = System.nanoTime();
+        metrics.recordFilter(filtered - start);
+        Schema schema = schemaConverter.convert(elasticDocument, index);
+        Struct struct = structConverter.convert(elasticDocument, schema);
+        metrics.recordConversion(System.nanoTime() - filtered);
+        return newSourceRecord(index, sourcePartition, sourceOffset, key, schema, struct);
+    }
+
+    private boolean sampleDocument() {
+        if (stageTimingSampling <= 0 || ++untimedDocuments < stageTimingSampling) {
+            return false;
+        }
+        untimedDocuments = 0;
+        return true;
+    }
+
+    //same as the untimed conversion, with a clock read between each stage
+    private SourceRecord timedSourceRecord(String index, Map<String, String> sourcePartition,
+                                           Map<String, String> sourceOffset, String key,
+                                           Map<String, Object> elasticDocument) {
+        long start = System.nanoTime();
+        documentFilters.forEach(jsonFilter -> jsonFilter.filter(elasticDocument));
+        long filtered = System.nanoTime();
+        Schema schema = schemaConverter.convert(elasticDocument, index);
+        long schemaConverted = System.nanoTime();
+        Struct struct = structConverter.convert(elasticDocument, schema);
+        long structConverted = System.nanoTime();
+        SourceRecord record = newSourceRecord(index, sourcePartition, sourceOffset, key, schema, struct);
+        long built = System.nanoTime();
+
+        metrics.recordStage(PollStage.FILTER, filtered - start);
+        metrics.recordStage(PollStage.SCHEMA, schemaConverted - filtered);
+        metrics.recordStage(PollStage.STRUCT, structConverted - schemaConverted);
+        metrics.recordStage(PollStage.RECORD_BUILD, built - structConverted);
+        metrics.recordFilter(filtered - start);
+        metrics.recordConversion(structConverted - filtered);
+        return record;
+    }
+
+    private SourceRecord newSourceRecord(String index, Map<String, String> sourcePartition,
+                                         Map<String, String> sourceOffset, String key, Schema schema, Struct struct) {
+        return new SourceRecord(
+                sourcePartition,
+                sourceOffset,
+                topic + index,
+                //KEY
+                Schema.STRING_SCHEMA,
+                key,
+                //VALUE
+                schema,
+                struct);
     }
 
     //will be called by connect with a different thread than poll thread
     public void stop() {
         stopping.set(true);
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+        }
+        if (reconciliationExecutor != null) {
+            reconciliationExecutor.shutdownNow();
+        }
         if (es != null) {
             es.closeQuietly();
         }
+        if (metrics != null) {
+            metrics.close();
+        }
     }
 }
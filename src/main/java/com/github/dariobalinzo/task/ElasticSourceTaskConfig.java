@@ -31,7 +31,8 @@ import java.util.Map;
 public class ElasticSourceTaskConfig extends ElasticSourceConnectorConfig {
 
     static ConfigDef config = baseConfigDef()
-            .define(INDICES_CONFIG, Type.STRING, Importance.HIGH, INDICES_CONFIG);
+            .define(INDICES_CONFIG, Type.STRING, Importance.HIGH, INDICES_CONFIG)
+            .define(TASK_ID_CONFIG, Type.STRING, "0", Importance.LOW, TASK_ID_CONFIG);
 
     public ElasticSourceTaskConfig(Map<String, String> props) {
         super(config, props);
@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import com.github.dariobalinzo.elastic.SearchListener;
+import com.github.dariobalinzo.elastic.response.Backlog;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.utils.Time;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sensors of a task, registered in JMX under the {@value #JMX_PREFIX} domain: one task-metrics bean for the task,
+ * one index-metrics bean for each index read by the task and one stage-metrics bean for each {@link PollStage}.
+ */
+public class ElasticSourceTaskMetrics implements SearchListener, AutoCloseable {
+    static final String JMX_PREFIX = "kafka.connect.elasticsearch.source";
+    static final String TASK_GROUP = "task-metrics";
+    static final String INDEX_GROUP = "index-metrics";
+    static final String STAGE_GROUP = "stage-metrics";
+    private static final double MAX_LATENCY_MS = 30_000;
+    private static final int LATENCY_BUCKETS = 1000;
+
+    private final Metrics metrics;
+    private final Map<String, String> taskTags;
+    private final Sensor searchLatency;
+    private final Sensor responseBytes;
+    private final Sensor retries;
+    private final Sensor hitsPerPage;
+    private final Sensor conversionTime;
+    private final Sensor filterTime;
+    private final Sensor records;
+    private final Map<String, Sensor> indexRecords = new ConcurrentHashMap<>();
+    private final Map<String, Long> cursorTimestamps = new ConcurrentHashMap<>();
+    private final Map<String, Backlog> backlogs = new ConcurrentHashMap<>();
+    private final Map<PollStage, LatencyHistogram> stages = new EnumMap<>(PollStage.class);
+    private final Map<PollStage, LatencyHistogram.Snapshot> lastSummary = new EnumMap<>(PollStage.class);
+    private long lastSummaryMs = System.currentTimeMillis();
+
+    /**
+     * @param task the index of the task in the configs of the connector, stable across restarts
+     */
+    public ElasticSourceTaskMetrics(String connector, String task) {
+        this(new Metrics(
+                new MetricConfig(),
+                Collections.singletonList(new JmxReporter()),
+                Time.SYSTEM,
+                new KafkaMetricsContext(JMX_PREFIX)
+        ), connector, task);
+    }
+
+    ElasticSourceTaskMetrics(Metrics metrics, String connector) {
+        this(metrics, connector, "0");
+    }
+
+    ElasticSourceTaskMetrics(Metrics metrics, String connector, String task) {
+        this.metrics = metrics;
+        this.taskTags = new HashMap<>();
+        taskTags.put("connector", connector);
+        taskTags.put("task", task);
+
+        searchLatency = metrics.sensor("search-latency");
+        searchLatency.add(taskMetric("search-latency-avg", "Average latency of the searches, in ms"), new Avg());
+        searchLatency.add(taskMetric("search-latency-max", "Maximum latency of the searches, in ms"), new Max());
+        searchLatency.add(new Percentiles(LATENCY_BUCKETS * 4, MAX_LATENCY_MS, Percentiles.BucketSizing.LINEAR,
+                new Percentile(taskMetric("search-latency-p50", "Median latency of the searches, in ms"), 50),
+                new Percentile(taskMetric("search-latency-p95", "95th percentile latency of the searches, in ms"), 95),
+                new Percentile(taskMetric("search-latency-p99", "99th percentile latency of the searches, in ms"), 99)
+        ));
+
+        responseBytes = metrics.sensor("response-bytes");
+        responseBytes.add(taskMetric("response-bytes-avg", "Average size of the search responses"), new Avg());
+        responseBytes.add(taskMetric("response-bytes-total", "Total size of the search responses"), new CumulativeSum());
+
+        retries = metrics.sensor("retries");
+        retries.add(taskMetric("retries-total", "Number of searches retried after a transient error"), new CumulativeCount());
+
+        hitsPerPage = metrics.sensor("hits-per-page");
+        hitsPerPage.add(taskMetric("hits-per-page-avg", "Average number of documents of a page"), new Avg());
+        hitsPerPage.add(taskMetric("hits-per-page-max", "Maximum number of documents of a page"), new Max());
+
+        conversionTime = metrics.sensor("conversion-time");
+        conversionTime.add(taskMetric("conversion-time-avg", "Average time to convert a document to a record, in ms"), new Avg());
+        conversionTime.add(taskMetric("conversion-time-max", "Maximum time to convert a document to a record, in ms"), new Max());
+
+        filterTime = metrics.sensor("filter-time");
+        filterTime.add(taskMetric("filter-time-avg", "Average time to filter a document, in ms"), new Avg());
+        filterTime.add(taskMetric("filter-time-max", "Maximum time to filter a document, in ms"), new Max());
+
+        records = metrics.sensor("records");
+        records.add(taskMetric("records-rate", "Records returned per second"), new Rate());
+        records.add(taskMetric("records-total", "Total number of records returned"), new CumulativeSum());
+
+        for (PollStage stage : PollStage.values()) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            stages.put(stage, histogram);
+            lastSummary.put(stage, LatencyHistogram.Snapshot.EMPTY);
+            metrics.addMetric(stageMetric("time-avg-us", "Average time of the stage, in microseconds", stage),
+                    (config, now) -> histogram.snapshot().mean() / 1000);
+            metrics.addMetric(stageMetric("time-p50-us", "Median time of the stage, in microseconds", stage),
+                    (config, now) -> histogram.snapshot().percentile(50) / 1000);
+            metrics.addMetric(stageMetric("time-p99-us", "99th percentile time of the stage, in microseconds", stage),
+                    (config, now) -> histogram.snapshot().percentile(99) / 1000);
+            metrics.addMetric(stageMetric("time-max-us", "Maximum time of the stage, in microseconds", stage),
+                    (config, now) -> histogram.snapshot().getMax() / 1000.0);
+            metrics.addMetric(stageMetric("samples-total", "Number of timings of the stage", stage),
+                    (config, now) -> histogram.snapshot().getCount());
+        }
+    }
+
+    private MetricName taskMetric(String name, String description) {
+        return metrics.metricName(name, TASK_GROUP, description, taskTags);
+    }
+
+    private MetricName indexMetric(String name, String description, String index) {
+        Map<String, String> tags = new HashMap<>(taskTags);
+        tags.put("index", index);
+        return metrics.metricName(name, INDEX_GROUP, description, tags);
+    }
+
+    private MetricName stageMetric(String name, String description, PollStage stage) {
+        Map<String, String> tags = new HashMap<>(taskTags);
+        tags.put("stage", stage.getMetricName());
+        return metrics.metricName(name, STAGE_GROUP, description, tags);
+    }
+
+    @Override
+    public void onSearch(long latencyMs) {
+        searchLatency.record(latencyMs);
+    }
+
+    @Override
+    public void onResponseBytes(long bytes) {
+        responseBytes.record(bytes);
+    }
+
+    @Override
+    public void onRetry() {
+        retries.record();
+    }
+
+    @Override
+    public void onPage(long buildNanos, long waitNanos, long decodeNanos) {
+        recordStage(PollStage.REQUEST_BUILD, buildNanos);
+        recordStage(PollStage.NETWORK_WAIT, waitNanos);
+        recordStage(PollStage.DECODE, decodeNanos);
+    }
+
+    public void recordStage(PollStage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    /**
+     * One line with the count, average, median and 99th percentile time (in microseconds) of each stage timed
+     * since the previous summary.
+     */
+    public synchronized String stageSummary() {
+        long now = System.currentTimeMillis();
+        StringBuilder summary = new StringBuilder("stage timings of the last ")
+                .append((now - lastSummaryMs) / 1000).append(" s (count avg/p50/p99 us):");
+        for (PollStage stage : PollStage.values()) {
+            LatencyHistogram.Snapshot current = stages.get(stage).snapshot();
+            LatencyHistogram.Snapshot interval = current.since(lastSummary.put(stage, current));
+            summary.append(' ').append(stage.getMetricName()).append(' ').append(interval.getCount());
+            if (interval.getCount() > 0) {
+                summary.append(String.format(Locale.ROOT, " %.1f/%.1f/%.1f",
+                        interval.mean() / 1000, interval.percentile(50) / 1000, interval.percentile(99) / 1000));
+            }
+            summary.append(stage.ordinal() < PollStage.values().length - 1 ? "," : "");
+        }
+        lastSummaryMs = now;
+        return summary.toString();
+    }
+
+    public void recordPage(int hits) {
+        hitsPerPage.record(hits);
+    }
+
+    public void recordConversion(long nanos) {
+        conversionTime.record(nanos / 1_000_000.0);
+    }
+
+    public void recordFilter(long nanos) {
+        filterTime.record(nanos / 1_000_000.0);
+    }
+
+    public void recordRecords(String index, int count) {
+        indexSensor(index).record(count);
+    }
+
+    /**
+     * Tracks the cursor lag of the index: the time elapsed since the cursor value, when it is an ISO-8601 timestamp.
+     * The lag of an index whose cursor is not a date is NaN: numbers are not taken as epoch millis, the type of the
+     * cursor field is not known here.
+     */
+    public void recordCursor(String index, String cursor) {
+        indexSensor(index);
+        Long timestamp = parseTimestamp(cursor);
+        if (timestamp != null) {
+            cursorTimestamps.put(index, timestamp);
+        }
+    }
+
+    /**
+     * Exposes the last backlog estimate of the index: the (capped) count of the documents after the cursor
+     * and their max cursor value.
+     */
+    public void recordBacklog(String index, Backlog backlog) {
+        if (backlogs.put(index, backlog) == null) {
+            metrics.addMetric(
+                    indexMetric("backlog-records", "Documents after the cursor at the last estimate (capped)", index),
+                    (config, now) -> backlogs.get(index).getCount()
+            );
+            metrics.addMetric(
+                    indexMetric("backlog-max-cursor", "Max cursor value at the last estimate (epoch millis for dates)", index),
+                    (config, now) -> backlogs.get(index).getMaxCursor()
+            );
+        }
+    }
+
+    public long recordsSent(String index) {
+        KafkaMetric metric = metrics.metric(indexMetric("records-total", "", index));
+        return metric == null ? 0 : ((Number) metric.metricValue()).longValue();
+    }
+
+    private Sensor indexSensor(String index) {
+        return indexRecords.computeIfAbsent(index, i -> {
+            Sensor sensor = metrics.sensor("records." + i, records);
+            sensor.add(indexMetric("records-rate", "Records returned per second", i), new Rate());
+            sensor.add(indexMetric("records-total", "Total number of records returned", i), new CumulativeSum());
+            metrics.addMetric(
+                    indexMetric("cursor-lag-ms", "Time elapsed since the last cursor value, if it is a date", i),
+                    (config, now) -> {
+                        Long timestamp = cursorTimestamps.get(i);
+                        return timestamp == null ? Double.NaN : now - timestamp;
+                    }
+            );
+            return sensor;
+        });
+    }
+
+    static Long parseTimestamp(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(cursor).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        metrics.close();
+    }
+}
@@ -1,24 +1,95 @@
 package com.github.dariobalinzo.task;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.dariobalinzo.elastic.CursorField;
+import com.github.dariobalinzo.elastic.response.Cursor;
+import org.apache.kafka.connect.errors.ConnectException;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.github.dariobalinzo.task.ElasticSourceTask.POSITION;
+import static com.github.dariobalinzo.task.ElasticSourceTask.POSITION_IDS;
 import static com.github.dariobalinzo.task.ElasticSourceTask.POSITION_SECONDARY;
 
 public class OffsetSerializer {
+    private static final TypeReference<List<String>> IDS_TYPE = new TypeReference<List<String>>() {
+    };
 
-    public Map<String, String> toMapOffset(CursorField primaryCursor, CursorField secondaryCursor, Map<String, Object> document) {
-        Map<String, String> result = new HashMap<>();
-        result.put(POSITION, primaryCursor.read(document));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public Map<String, String> toMapOffset(Cursor cursor) {
+        return toMapOffset(cursor.getPrimaryCursor(), cursor.getSecondaryCursor(), cursor.getBoundaryIds());
+    }
+
+    public Map<String, String> toMapOffset(String primaryCursor, String secondaryCursor, List<String> boundaryIds) {
+        if (secondaryCursor == null && boundaryIds.isEmpty()) {
+            return Collections.singletonMap(POSITION, primaryCursor);
+        }
+        Map<String, String> result = new HashMap<>(4);
+        result.put(POSITION, primaryCursor);
         if (secondaryCursor != null) {
-            result.put(POSITION_SECONDARY, secondaryCursor.read(document));
+            result.put(POSITION_SECONDARY, secondaryCursor);
+        }
+        if (!boundaryIds.isEmpty()) {
+            result.put(POSITION_IDS, toJson(boundaryIds));
         }
         return result;
     }
 
+    /**
+     * @param partition the partition of the offset, named in the error if the offset cannot be read
+     */
+    public Cursor toCursor(Map<String, ?> partition, Map<String, Object> offset) {
+        String primaryCursor = (String) offset.get(POSITION);
+        String boundaryIds = (String) offset.get(POSITION_IDS);
+        if (boundaryIds != null) {
+            return Cursor.withBoundaryIds(primaryCursor, parseIds(partition, boundaryIds));
+        }
+        return new Cursor(primaryCursor, (String) offset.get(POSITION_SECONDARY));
+    }
+
+    //ids may contain any character, they are stored as a json array
+    private String toJson(List<String> boundaryIds) {
+        try {
+            return objectMapper.writeValueAsString(boundaryIds);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<String> parseIds(Map<String, ?> partition, String boundaryIds) {
+        try {
+            return objectMapper.readValue(boundaryIds, IDS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new ConnectException("invalid " + POSITION_IDS + " in the offset of partition " + partition +
+                    ": " + boundaryIds, e);
+        }
+    }
+
+    /**
+     * Same key as {@link #toStringOffset(CursorField, CursorField, String, Map)}, from the cursor values
+     * already read from the document.
+     */
+    public String toStringOffset(String index, Cursor cursor) {
+        return toStringOffset(index, cursor.getPrimaryCursor(), cursor.getSecondaryCursor());
+    }
+
+    public String toStringOffset(String index, String primaryCursorValue, String secondaryCursor) {
+        String primaryCursor = String.valueOf(primaryCursorValue);
+        StringBuilder key = new StringBuilder(index.length() + primaryCursor.length() + 1 +
+                (secondaryCursor == null ? 0 : secondaryCursor.length() + 1));
+        key.append(index).append('_').append(primaryCursor);
+        if (secondaryCursor != null) {
+            key.append('_').append(secondaryCursor);
+        }
+        return key.toString();
+    }
+
     public String toStringOffset(CursorField cursor, CursorField secondaryCursor, String index, Map<String, Object> document) {
         String cursorValue = cursor.read(document);
         if (secondaryCursor == null) {
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+/**
+ * The timed stages of a poll. The first ones are timed once for each index or page, the document ones only for the
+ * sampled documents.
+ */
+public enum PollStage {
+    /**
+     * Reading the last cursor of an index, from memory or from the offset storage.
+     */
+    OFFSET_LOOKUP("offset-lookup"),
+    /**
+     * Building the search request of a page.
+     */
+    REQUEST_BUILD("request-build"),
+    /**
+     * Sending the search and receiving its response, including retries and the parsing of the response envelope
+     * (the sources of the hits are still raw bytes at this point).
+     */
+    NETWORK_WAIT("network-wait"),
+    /**
+     * Decoding the sources of the hits of a page to documents.
+     */
+    DECODE("decode"),
+    /**
+     * Applying the document filters.
+     */
+    FILTER("filter"),
+    /**
+     * Inferring the schema of a document.
+     */
+    SCHEMA("schema"),
+    /**
+     * Converting a document to a struct.
+     */
+    STRUCT("struct"),
+    /**
+     * Building the source record.
+     */
+    RECORD_BUILD("record-build");
+
+    private final String metricName;
+
+    PollStage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the progress of the polls of a task and renders it, at most once per interval, as a single key=value
+ * line: polls, idle polls and records of the interval, then records, pages and last cursor of each index that
+ * returned documents. Used by the poll thread only, it is not thread safe.
+ */
+class ProgressReporter {
+    private final long intervalMs;
+    private final Map<String, IndexProgress> indices = new TreeMap<>();
+    private long intervalStart;
+    private long polls;
+    private long idlePolls;
+    private long records;
+
+    /**
+     * @param intervalMs minimum time between two reports, 0 disables them
+     */
+    ProgressReporter(long intervalMs, long now) {
+        this.intervalMs = intervalMs;
+        this.intervalStart = now;
+    }
+
+    void recordPage(String index, int documents, String cursor) {
+        if (intervalMs <= 0) {
+            return;
+        }
+        IndexProgress progress = indices.computeIfAbsent(index, i -> new IndexProgress());
+        progress.pages++;
+        progress.records += documents;
+        if (cursor != null) {
+            progress.cursor = cursor;
+        }
+    }
+
+    void recordPoll(int returnedRecords) {
+        polls++;
+        records += returnedRecords;
+        if (returnedRecords == 0) {
+            idlePolls++;
+        }
+    }
+
+    /**
+     * The report of the interval if it is over (and a new interval starts), null otherwise.
+     */
+    String report(long now) {
+        if (intervalMs <= 0 || now - intervalStart < intervalMs) {
+            return null;
+        }
+        StringBuilder report = new StringBuilder("progress")
+                .append(" interval_ms=").append(now - intervalStart)
+                .append(" polls=").append(polls)
+                .append(" idle_polls=").append(idlePolls)
+                .append(" records=").append(records);
+        indices.forEach((index, progress) -> {
+            if (progress.records > 0) {
+                report.append(" | index=").append(index)
+                        .append(" records=").append(progress.records)
+                        .append(" pages=").append(progress.pages)
+                        .append(" cursor=").append(progress.cursor);
+            }
+            progress.records = 0;
+            progress.pages = 0;
+        });
+        intervalStart = now;
+        polls = 0;
+        idlePolls = 0;
+        records = 0;
+        return report.toString();
+    }
+
+    private static class IndexProgress {
+        private long records;
+        private long pages;
+        //kept across intervals: the position of an index that returned nothing did not move
+        private String cursor;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Detects deleted documents by comparing the keys of all the documents of an index with the ones found
+ * by the previous pass. Each index has a snapshot file with the keys of the last pass; a new pass writes
+ * a pending snapshot, which replaces the previous one only once {@link #promote(String)} is called, that is
+ * when the tombstones of the removed keys have been delivered.
+ */
+class Reconciler {
+    private static final Logger logger = LoggerFactory.getLogger(Reconciler.class);
+    static final int RUN_SIZE = 100_000;
+
+    private final Scanner scanner;
+    private final Path directory;
+    private final String prefix;
+    private final int runSize;
+
+    /**
+     * Reads the cursor values of all the documents of an index, e.g. ElasticRepository#scanCursorValues.
+     */
+    interface Scanner {
+        void scan(String index, Consumer<Map<String, Object>> consumer) throws IOException, InterruptedException;
+    }
+
+    Reconciler(Scanner scanner, Path directory, String prefix, int runSize) {
+        this.scanner = scanner;
+        this.directory = directory;
+        this.prefix = prefix;
+        this.runSize = runSize;
+    }
+
+    /**
+     * Scans the index and streams the keys removed since the last promoted snapshot. Without a previous snapshot
+     * the pass only records the current keys.
+     */
+    void reconcile(String index, Function<Map<String, Object>, String> keyFunction, Consumer<String> removed)
+            throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        Path pending = pendingSnapshot(index);
+        try (SortedKeyFile.Builder builder = new SortedKeyFile.Builder(pending, runSize)) {
+            scanner.scan(index, document -> {
+                try {
+                    builder.add(keyFunction.apply(document));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            builder.build();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Path current = snapshot(index);
+        if (Files.exists(current)) {
+            SortedKeyFile.diff(current, pending, removed);
+        } else {
+            logger.info("no previous snapshot of index {}, deletions will be detected from the next pass", index);
+        }
+    }
+
+    void promote(String index) throws IOException {
+        Path pending = pendingSnapshot(index);
+        if (Files.exists(pending)) {
+            Files.move(pending, snapshot(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Path snapshot(String index) {
+        return directory.resolve(prefix + index + ".keys");
+    }
+
+    private Path pendingSnapshot(String index) {
+        return directory.resolve(prefix + index + ".keys.pending");
+    }
+}
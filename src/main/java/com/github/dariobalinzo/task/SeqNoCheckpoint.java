@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import org.elasticsearch.index.seqno.SequenceNumbers;
+
+/**
+ * Upper bound of the sequence numbers that can be safely read from a shard.
+ * The global checkpoint guarantees that the operations below it will not be rolled back, but not that they are
+ * already visible to searches: a checkpoint becomes the bound only once it has been observed for at least the
+ * visibility delay, so that a refresh happened in the meantime.
+ */
+class SeqNoCheckpoint {
+    private final long visibilityDelayMs;
+
+    private long visible = SequenceNumbers.NO_OPS_PERFORMED;
+    private long pending = SequenceNumbers.NO_OPS_PERFORMED;
+    private long pendingSince;
+
+    SeqNoCheckpoint(long visibilityDelayMs) {
+        this.visibilityDelayMs = visibilityDelayMs;
+    }
+
+    long update(long globalCheckpoint, long now) {
+        promotePending(now);
+        //a newer checkpoint does not restart the wait of the pending one, otherwise a busy shard would never progress
+        if (globalCheckpoint > pending && pending <= visible) {
+            pending = globalCheckpoint;
+            pendingSince = now;
+        }
+        promotePending(now);
+        return visible;
+    }
+
+    private void promotePending(long now) {
+        if (pending > visible && now - pendingSince >= visibilityDelayMs) {
+            visible = pending;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * A sorted set of keys stored in a file. It is built with an external merge sort: keys are sorted in memory
+ * in runs of bounded size, spilled to temporary files and merged, at most {@value #MERGE_FAN_IN} at a time, so
+ * that sets much larger than the heap can be built and compared by streaming with a bounded number of open files.
+ */
+class SortedKeyFile {
+    static final int MERGE_FAN_IN = 64;
+
+    private SortedKeyFile() {
+    }
+
+    /**
+     * Streams the keys that are in the previous set but no longer in the current one.
+     */
+    static void diff(Path previous, Path current, Consumer<String> removed) throws IOException {
+        try (KeyReader previousKeys = new KeyReader(previous);
+             KeyReader currentKeys = new KeyReader(current)) {
+            String previousKey = previousKeys.next();
+            String currentKey = currentKeys.next();
+            while (previousKey != null) {
+                int comparison = currentKey == null ? -1 : previousKey.compareTo(currentKey);
+                if (comparison < 0) {
+                    removed.accept(previousKey);
+                    previousKey = previousKeys.next();
+                } else if (comparison == 0) {
+                    previousKey = previousKeys.next();
+                    currentKey = currentKeys.next();
+                } else {
+                    currentKey = currentKeys.next();
+                }
+            }
+        }
+    }
+
+    static class Builder implements Closeable {
+        private final Path target;
+        private final int runSize;
+        private final int fanIn;
+        private final List<String> buffer = new ArrayList<>();
+        private final List<Path> runs = new ArrayList<>();
+
+        Builder(Path target, int runSize) {
+            this(target, runSize, MERGE_FAN_IN);
+        }
+
+        Builder(Path target, int runSize, int fanIn) {
+            if (fanIn < 2) {
+                throw new IllegalArgumentException("the merge fan in must be at least 2");
+            }
+            this.target = target;
+            this.runSize = runSize;
+            this.fanIn = fanIn;
+        }
+
+        void add(String key) throws IOException {
+            buffer.add(key);
+            if (buffer.size() >= runSize) {
+                spill();
+            }
+        }
+
+        /**
+         * Merges the runs into the target file, dropping duplicated keys. While there are more runs than the fan in,
+         * the oldest ones are first merged into a new run.
+         */
+        Path build() throws IOException {
+            try {
+                spill();
+                while (runs.size() > fanIn) {
+                    List<Path> merged = new ArrayList<>(runs.subList(0, fanIn));
+                    Path run = createRun();
+                    merge(merged, run);
+                    runs.removeAll(merged);
+                    for (Path path : merged) {
+                        Files.delete(path);
+                    }
+                }
+                merge(runs, target);
+            } finally {
+                close();
+            }
+            return target;
+        }
+
+        private static void merge(List<Path> runs, Path target) throws IOException {
+            PriorityQueue<RunHead> heads = new PriorityQueue<>();
+            List<KeyReader> readers = new ArrayList<>();
+            try (DataOutputStream out = openWriter(target)) {
+                for (Path run : runs) {
+                    KeyReader reader = new KeyReader(run);
+                    readers.add(reader);
+                    RunHead.offer(heads, reader);
+                }
+                String last = null;
+                while (!heads.isEmpty()) {
+                    RunHead head = heads.poll();
+                    if (!head.key.equals(last)) {
+                        out.writeUTF(head.key);
+                        last = head.key;
+                    }
+                    RunHead.offer(heads, head.reader);
+                }
+            } finally {
+                for (KeyReader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+
+        private void spill() throws IOException {
+            if (buffer.isEmpty() && !runs.isEmpty()) {
+                return;
+            }
+            Collections.sort(buffer);
+            Path run = createRun();
+            try (DataOutputStream out = openWriter(run)) {
+                for (String key : buffer) {
+                    out.writeUTF(key);
+                }
+            }
+            buffer.clear();
+        }
+
+        //added to the runs at once, so that it is deleted by close if it cannot be written
+        private Path createRun() throws IOException {
+            Path run = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".run");
+            runs.add(run);
+            return run;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+            buffer.clear();
+        }
+    }
+
+    private static DataOutputStream openWriter(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    private static class RunHead implements Comparable<RunHead> {
+        private final String key;
+        private final KeyReader reader;
+
+        private RunHead(String key, KeyReader reader) {
+            this.key = key;
+            this.reader = reader;
+        }
+
+        private static void offer(PriorityQueue<RunHead> heads, KeyReader reader) throws IOException {
+            String key = reader.next();
+            if (key != null) {
+                heads.add(new RunHead(key, reader));
+            }
+        }
+
+        @Override
+        public int compareTo(RunHead other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    private static class KeyReader implements Closeable {
+        private final DataInputStream in;
+
+        private KeyReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        private String next() throws IOException {
+            try {
+                return in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import org.apache.kafka.connect.source.SourceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Hands the tombstones of the reconciliation passes over from the reconciliation thread to poll, and tracks the
+ * acknowledgements of their sends: the snapshot of a pass is promoted, at an offset commit, only once every tombstone
+ * of the pass has been acknowledged by the producer. If a send fails (or a tombstone is dropped) the pass is
+ * discarded, the next one compares the keys with the same previous snapshot and sends the tombstones again. No new
+ * pass of an index is started while one is in flight.
+ */
+class TombstoneQueue {
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneQueue.class);
+
+    private final BlockingQueue<SourceRecord> tombstones;
+    private final Map<String, Pass> passes = new ConcurrentHashMap<>();
+
+    TombstoneQueue(int capacity) {
+        this.tombstones = new LinkedBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Blocks while the queue is full, that is when poll does not keep up with the tombstones.
+     */
+    void put(String index, SourceRecord tombstone) throws InterruptedException {
+        pass(index).queued();
+        tombstones.put(tombstone);
+    }
+
+    /**
+     * Called once all the tombstones of the pass of the index have been queued.
+     */
+    void passCompleted(String index) {
+        pass(index).complete(false);
+    }
+
+    /**
+     * Called when the pass of the index fails: its snapshot is never promoted.
+     */
+    void passAborted(String index) {
+        pass(index).complete(true);
+        discardIfOver(index);
+    }
+
+    /**
+     * True from the start of a pass of the index until its snapshot is promoted or discarded.
+     */
+    boolean isPending(String index) {
+        return passes.containsKey(index);
+    }
+
+    /**
+     * Called by poll: moves the queued tombstones to the results.
+     */
+    int drainTo(List<SourceRecord> results) {
+        return tombstones.drainTo(results);
+    }
+
+    /**
+     * Called for each tombstone acknowledged by the producer, or dropped (not sent) when sent is false.
+     */
+    void acked(String index, boolean sent) {
+        Pass pass = passes.get(index);
+        if (pass != null) {
+            pass.acked(sent);
+            discardIfOver(index);
+        }
+    }
+
+    /**
+     * Called at the offset commit: promotes the snapshots of the completed passes whose tombstones have all been
+     * acknowledged.
+     */
+    void promoteAcked(Reconciler reconciler) {
+        passes.forEach((index, pass) -> {
+            if (pass.isPromotable()) {
+                try {
+                    reconciler.promote(index);
+                    passes.remove(index);
+                } catch (IOException e) {
+                    logger.error("error promoting the reconciliation snapshot of index {}", index, e);
+                }
+            }
+        });
+    }
+
+    private Pass pass(String index) {
+        return passes.computeIfAbsent(index, i -> new Pass());
+    }
+
+    private void discardIfOver(String index) {
+        Pass pass = passes.get(index);
+        if (pass != null && pass.isDiscarded()) {
+            logger.warn("reconciliation pass of index {} discarded, its tombstones will be sent again by the next one", index);
+            passes.remove(index);
+        }
+    }
+
+    private static class Pass {
+        private int queued;
+        private int acked;
+        private boolean completed;
+        private boolean failed;
+
+        private synchronized void queued() {
+            queued++;
+        }
+
+        private synchronized void complete(boolean aborted) {
+            completed = true;
+            failed |= aborted;
+        }
+
+        private synchronized void acked(boolean sent) {
+            acked++;
+            failed |= !sent;
+        }
+
+        private synchronized boolean isPromotable() {
+            return completed && !failed && acked == queued;
+        }
+
+        private synchronized boolean isDiscarded() {
+            return completed && failed && acked == queued;
+        }
+    }
+}
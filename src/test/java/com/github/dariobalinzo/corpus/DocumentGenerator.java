@@ -0,0 +1,338 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.corpus;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded generator of documents shaped like the sources returned by elasticsearch (LinkedHashMap, ArrayList,
+ * Integer, Long, Double, String and Boolean values).
+ * <p>
+ * The document with a given cursor value (the ts field) only depends on the seed and on that value, so any page
+ * can be generated again, in any order and from any thread. Within a document, the kind of a field (scalar, object,
+ * list of scalars or list of objects) and its base type only depend on its name and nesting level: the items of a
+ * list of objects always have compatible schemas. Type drift changes the type of a scalar field from one document
+ * to the other, never inside a list.
+ */
+public class DocumentGenerator {
+    public static final String CURSOR_FIELD = "ts";
+
+    private enum Kind {SCALAR, OBJECT, SCALAR_LIST, OBJECT_LIST}
+
+    private enum Type {STRING, INT, LONG, DOUBLE, BOOLEAN, DATE}
+
+    private static final Type[] TYPES = Type.values();
+    private static final String[] EXOTIC_NAMES = {"field-%d", "@field%d", "%dfield", "field %d", "fïeld%d", "field$%d"};
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 éàüß";
+
+    private final long seed;
+    private final int minFields;
+    private final int maxFields;
+    private final int maxDepth;
+    private final double objectRate;
+    private final double scalarListRate;
+    private final double objectListRate;
+    private final int minListSize;
+    private final int maxListSize;
+    private final double typeDriftRate;
+    private final double exoticNameRate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DocumentGenerator(Builder builder) {
+        this.seed = builder.seed;
+        this.minFields = builder.minFields;
+        this.maxFields = builder.maxFields;
+        this.maxDepth = builder.maxDepth;
+        this.objectRate = builder.objectRate;
+        this.scalarListRate = builder.scalarListRate;
+        this.objectListRate = builder.objectListRate;
+        this.minListSize = builder.minListSize;
+        this.maxListSize = builder.maxListSize;
+        this.typeDriftRate = builder.typeDriftRate;
+        this.exoticNameRate = builder.exoticNameRate;
+    }
+
+    public static Builder builder(long seed) {
+        return new Builder(seed);
+    }
+
+    /**
+     * The document with the given cursor value.
+     */
+    public Map<String, Object> document(long cursor) {
+        Random random = new Random(mix(seed ^ mix(cursor)));
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put(CURSOR_FIELD, cursor);
+        fillObject(document, random, 0, true);
+        return document;
+    }
+
+    /**
+     * The documents with the cursor values after the given one: after + 1 ... after + count.
+     */
+    public List<Map<String, Object>> documentsAfter(long after, int count) {
+        List<Map<String, Object>> documents = new ArrayList<>(count);
+        for (long cursor = after + 1; cursor <= after + count; cursor++) {
+            documents.add(document(cursor));
+        }
+        return documents;
+    }
+
+    /**
+     * Raw body of a search response holding the given documents, sorted on the cursor field.
+     */
+    public String searchResponse(String index, List<Map<String, Object>> documents) {
+        List<Object> hits = new ArrayList<>(documents.size());
+        for (Map<String, Object> document : documents) {
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("_index", index);
+            hit.put("_type", "_doc");
+            hit.put("_id", String.valueOf(document.get(CURSOR_FIELD)));
+            hit.put("_score", null);
+            hit.put("_source", document);
+            hit.put("sort", Collections.singletonList(document.get(CURSOR_FIELD)));
+            hits.add(hit);
+        }
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("value", documents.size());
+        total.put("relation", "eq");
+        Map<String, Object> hitsSection = new LinkedHashMap<>();
+        hitsSection.put("total", total);
+        hitsSection.put("max_score", null);
+        hitsSection.put("hits", hits);
+        Map<String, Object> shards = new LinkedHashMap<>();
+        shards.put("total", 1);
+        shards.put("successful", 1);
+        shards.put("skipped", 0);
+        shards.put("failed", 0);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("took", 1);
+        response.put("timed_out", false);
+        response.put("_shards", shards);
+        response.put("hits", hitsSection);
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void fillObject(Map<String, Object> object, Random random, int depth, boolean drift) {
+        int poolSize = maxFields * 2;
+        int fields = minFields + random.nextInt(maxFields - minFields + 1);
+        //a random subset of the name pool of the level, in pool order
+        List<Integer> slots = new ArrayList<>(poolSize);
+        for (int slot = 0; slot < poolSize; slot++) {
+            slots.add(slot);
+        }
+        Collections.shuffle(slots, random);
+        slots = new ArrayList<>(slots.subList(0, fields));
+        Collections.sort(slots);
+
+        for (int slot : slots) {
+            String name = name(slot, depth);
+            object.put(name, value(kind(name, depth), baseType(name, depth), random, depth, drift));
+        }
+    }
+
+    private Object value(Kind kind, Type baseType, Random random, int depth, boolean drift) {
+        switch (kind) {
+            case OBJECT:
+                Map<String, Object> nested = new LinkedHashMap<>();
+                fillObject(nested, random, depth + 1, drift);
+                return nested;
+            case SCALAR_LIST:
+                Type itemType = drift ? drift(baseType, random) : baseType;
+                List<Object> scalars = new ArrayList<>();
+                for (int i = listSize(random); i > 0; i--) {
+                    scalars.add(scalar(itemType, random));
+                }
+                return scalars;
+            case OBJECT_LIST:
+                List<Object> objects = new ArrayList<>();
+                for (int i = listSize(random); i > 0; i--) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    fillObject(item, random, depth + 1, false);
+                    objects.add(item);
+                }
+                return objects;
+            default:
+                return scalar(drift ? drift(baseType, random) : baseType, random);
+        }
+    }
+
+    private int listSize(Random random) {
+        return minListSize + random.nextInt(maxListSize - minListSize + 1);
+    }
+
+    private Type drift(Type baseType, Random random) {
+        if (random.nextDouble() >= typeDriftRate) {
+            return baseType;
+        }
+        return TYPES[(baseType.ordinal() + 1 + random.nextInt(TYPES.length - 1)) % TYPES.length];
+    }
+
+    private Object scalar(Type type, Random random) {
+        switch (type) {
+            case STRING:
+                StringBuilder value = new StringBuilder();
+                for (int i = 3 + random.nextInt(18); i > 0; i--) {
+                    value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+                return value.toString();
+            case INT:
+                return random.nextInt(100_000);
+            case LONG:
+                return 10_000_000_000L + (random.nextLong() & 0xFFFFFFFFFFL);
+            case DOUBLE:
+                return random.nextInt(10_000_000) / 100.0;
+            case BOOLEAN:
+                return random.nextBoolean();
+            default:
+                return Instant.ofEpochSecond(1_600_000_000L + random.nextInt(100_000_000)).toString();
+        }
+    }
+
+    //each slot has a single name: the avro names of the fields of an object are distinct as well
+    private String name(int slot, int depth) {
+        if (unit(depth * 7919L + slot) < exoticNameRate) {
+            return String.format(EXOTIC_NAMES[slot % EXOTIC_NAMES.length], slot);
+        }
+        return "field" + slot;
+    }
+
+    private Kind kind(String name, int depth) {
+        double value = unit(name.hashCode() * 31L + depth);
+        if (depth < maxDepth) {
+            if (value < objectRate) {
+                return Kind.OBJECT;
+            }
+            if (value < objectRate + objectListRate) {
+                return Kind.OBJECT_LIST;
+            }
+        }
+        if (value >= 1 - scalarListRate) {
+            return Kind.SCALAR_LIST;
+        }
+        return Kind.SCALAR;
+    }
+
+    private Type baseType(String name, int depth) {
+        return TYPES[(int) (unit(name.hashCode() * 17L + depth + 1) * TYPES.length)];
+    }
+
+    //uniform value in [0, 1) for the given key and the seed of the generator
+    private double unit(long key) {
+        return (mix(seed + mix(key)) >>> 11) * 0x1.0p-53;
+    }
+
+    //splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public static class Builder {
+        private final long seed;
+        private int minFields = 5;
+        private int maxFields = 20;
+        private int maxDepth = 3;
+        private double objectRate = 0.1;
+        private double scalarListRate = 0.05;
+        private double objectListRate = 0.05;
+        private int minListSize = 0;
+        private int maxListSize = 5;
+        private double typeDriftRate = 0;
+        private double exoticNameRate = 0;
+
+        private Builder(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Number of fields of each object (the top level one excluding the cursor field).
+         */
+        public Builder withFieldCount(int min, int max) {
+            if (min < 0 || max < min) {
+                throw new IllegalArgumentException("invalid field count range " + min + "-" + max);
+            }
+            this.minFields = min;
+            this.maxFields = max;
+            return this;
+        }
+
+        /**
+         * Nesting levels of objects below the top level one.
+         */
+        public Builder withMaxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Share of the field names holding a nested object, a list of objects or a list of scalars.
+         */
+        public Builder withNesting(double objectRate, double objectListRate, double scalarListRate) {
+            if (objectRate + objectListRate + scalarListRate > 1) {
+                throw new IllegalArgumentException("the rates must not exceed 1 in total");
+            }
+            this.objectRate = objectRate;
+            this.objectListRate = objectListRate;
+            this.scalarListRate = scalarListRate;
+            return this;
+        }
+
+        public Builder withListSize(int min, int max) {
+            if (min < 0 || max < min) {
+                throw new IllegalArgumentException("invalid list size range " + min + "-" + max);
+            }
+            this.minListSize = min;
+            this.maxListSize = max;
+            return this;
+        }
+
+        /**
+         * Probability that a scalar field (or list of scalars) has a different type than its usual one.
+         */
+        public Builder withTypeDriftRate(double typeDriftRate) {
+            this.typeDriftRate = typeDriftRate;
+            return this;
+        }
+
+        /**
+         * Share of the field names with characters that are not valid in avro names (dashes, spaces, symbols,
+         * accents, leading digits).
+         */
+        public Builder withExoticNameRate(double exoticNameRate) {
+            this.exoticNameRate = exoticNameRate;
+            return this;
+        }
+
+        public DocumentGenerator build() {
+            return new DocumentGenerator(this);
+        }
+    }
+}
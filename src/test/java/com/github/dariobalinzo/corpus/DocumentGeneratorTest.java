@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.corpus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DocumentGeneratorTest {
+
+    @Test
+    public void shouldGenerateTheSameDocumentForTheSameSeedAndCursor() {
+        //given
+        DocumentGenerator generator = DocumentGenerator.builder(7).withTypeDriftRate(0.3).withExoticNameRate(0.3).build();
+        DocumentGenerator sameSeed = DocumentGenerator.builder(7).withTypeDriftRate(0.3).withExoticNameRate(0.3).build();
+        DocumentGenerator otherSeed = DocumentGenerator.builder(8).withTypeDriftRate(0.3).withExoticNameRate(0.3).build();
+
+        //when
+        List<Map<String, Object>> page = generator.documentsAfter(100, 10);
+
+        //then
+        assertEquals(10, page.size());
+        assertEquals(101L, page.get(0).get(DocumentGenerator.CURSOR_FIELD));
+        assertEquals(110L, page.get(9).get(DocumentGenerator.CURSOR_FIELD));
+        assertEquals(page.get(4), sameSeed.document(105));
+        assertNotEquals(page.get(4), otherSeed.document(105));
+    }
+
+    @Test
+    public void shouldRespectTheFieldCount() {
+        //given
+        DocumentGenerator generator = DocumentGenerator.builder(1)
+                .withFieldCount(3, 6)
+                .withNesting(0, 0, 0)
+                .build();
+
+        for (long cursor = 0; cursor < 100; cursor++) {
+            //when
+            Map<String, Object> document = generator.document(cursor);
+
+            //then
+            int fields = document.size() - 1;
+            assertTrue(fields >= 3 && fields <= 6);
+            document.values().forEach(value -> assertFalse(value instanceof Map || value instanceof List));
+        }
+    }
+
+    @Test
+    public void shouldWriteTheDocumentsAsSearchResponse() {
+        //given
+        DocumentGenerator generator = DocumentGenerator.builder(1).withFieldCount(1, 1).withNesting(0, 0, 0).build();
+
+        //when
+        String response = generator.searchResponse("index", generator.documentsAfter(0, 2));
+
+        //then
+        assertTrue(response.startsWith("{\"took\":1,\"timed_out\":false,"));
+        assertTrue(response.contains("\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"}"));
+        assertTrue(response.contains("\"_index\":\"index\",\"_type\":\"_doc\",\"_id\":\"1\",\"_score\":null,\"_source\":{\"ts\":1,"));
+        assertTrue(response.contains("\"sort\":[2]"));
+    }
+}
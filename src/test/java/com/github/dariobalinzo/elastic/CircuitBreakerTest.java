@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    public void shouldOpenAfterConsecutiveFailures() {
+        //given
+        CircuitBreaker breaker = new CircuitBreaker(3, 500, now::get);
+
+        //when
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        //then
+        assertFalse(breaker.isOpen());
+        assertEquals(0, breaker.acquire());
+
+        breaker.onFailure();
+        assertTrue(breaker.isOpen());
+        assertEquals(500, breaker.acquire());
+    }
+
+    @Test
+    public void shouldLetASingleTrialThroughWhenHalfOpen() {
+        //given
+        CircuitBreaker breaker = new CircuitBreaker(1, 500, now::get);
+        breaker.onFailure();
+
+        //when
+        now.addAndGet(500);
+
+        //then
+        assertEquals(0, breaker.acquire());
+        assertEquals(500, breaker.acquire());
+
+        breaker.onSuccess();
+        assertEquals(0, breaker.acquire());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void shouldReopenWhenTrialFails() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 500, now::get);
+        breaker.onFailure();
+        now.addAndGet(600);
+        assertEquals(0, breaker.acquire());
+
+        breaker.onFailure();
+
+        assertTrue(breaker.isOpen());
+        assertEquals(500, breaker.acquire());
+    }
+
+    @Test
+    public void shouldBeDisabledWithZeroThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(0, 500, now::get);
+        for (int i = 0; i < 100; ++i) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.isOpen());
+        assertEquals(0, breaker.acquire());
+    }
+}
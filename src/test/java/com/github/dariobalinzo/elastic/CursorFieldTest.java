@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CursorFieldTest {
+
+    @Test
+    public void shouldReadNestedAndDottedFields() {
+        //given
+        Map<String, Object> inner = new HashMap<>();
+        inner.put("c", 3);
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("b", inner);
+        nested.put("b.d", 4);
+        Map<String, Object> document = new HashMap<>();
+        document.put("a", nested);
+        document.put("x.y", "flat");
+        document.put("name", "value");
+
+        //then
+        assertEquals("3", new CursorField("a.b.c").read(document));
+        assertEquals("4", new CursorField("a.b.d").read(document));
+        assertEquals("flat", new CursorField("x.y").read(document));
+        assertEquals("value", new CursorField("name.keyword").read(document));
+        assertNull(new CursorField("a.missing").read(document));
+        assertNull(new CursorField("name.other").read(document));
+        assertNull(new CursorField("a.").read(Collections.singletonMap("a", nested)));
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Node;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataNodeSelectorTest {
+
+    @Test
+    public void shouldSkipDedicatedMasterAndIngestNodes() {
+        //given
+        List<Node> nodes = new ArrayList<>(Arrays.asList(
+                node("master", "master"),
+                node("ingest", "ingest"),
+                node("data", "data", "ingest"),
+                node("hot", "data_hot"),
+                node("coordinating"),
+                new Node(new HttpHost("unknown"))
+        ));
+
+        //when
+        new DataNodeSelector().select(nodes);
+
+        //then
+        assertEquals(
+                Arrays.asList("data", "hot", "coordinating", "unknown"),
+                nodes.stream().map(n -> n.getHost().getHostName()).collect(Collectors.toList())
+        );
+    }
+
+    private Node node(String name, String... roles) {
+        return new Node(new HttpHost(name), null, name, "7.16.1",
+                new Node.Roles(new TreeSet<>(Arrays.asList(roles))), Collections.emptyMap());
+    }
+}
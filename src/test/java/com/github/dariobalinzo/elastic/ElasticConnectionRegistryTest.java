@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ElasticConnectionRegistryTest {
+
+    @Test
+    public void shouldShareConnectionsWithSameSettings() {
+        //given
+        ElasticConnectionRegistry registry = new ElasticConnectionRegistry();
+        ElasticConnectionBuilder builder = new ElasticConnectionBuilder("localhost", 9200);
+
+        //when
+        ElasticConnection first = registry.acquire(builder);
+        ElasticConnection second = registry.acquire(new ElasticConnectionBuilder("localhost", 9200));
+        ElasticConnection other = registry.acquire(new ElasticConnectionBuilder("localhost", 9200).withUser("user"));
+
+        //then
+        assertSame(first.getClient(), second.getClient());
+        assertNotSame(first.getClient(), other.getClient());
+        assertEquals(2, registry.size());
+
+        registry.release(other);
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenLastReferenceIsReleased() {
+        //given
+        ElasticConnectionRegistry registry = new ElasticConnectionRegistry();
+        ElasticConnectionBuilder builder = new ElasticConnectionBuilder("localhost", 9200);
+        ElasticConnection first = registry.acquire(builder);
+        ElasticConnection second = registry.acquire(builder);
+
+        //when
+        registry.release(first);
+
+        //then
+        assertEquals(1, registry.size());
+        assertTrue(second.getClient().getLowLevelClient().isRunning());
+
+        registry.release(second);
+        assertEquals(0, registry.size());
+        assertFalse(second.getClient().getLowLevelClient().isRunning());
+
+        ElasticConnection third = registry.acquire(builder);
+        assertNotSame(first.getClient(), third.getClient());
+        registry.release(third);
+    }
+
+    @Test
+    public void shouldReleaseEachHolderOnlyOnce() {
+        //given
+        ElasticConnectionRegistry registry = new ElasticConnectionRegistry();
+        ElasticConnectionBuilder builder = new ElasticConnectionBuilder("localhost", 9200);
+        ElasticConnection first = registry.acquire(builder);
+        ElasticConnection second = registry.acquire(builder);
+
+        //when (e.g. stop after a failed start)
+        first.closeQuietly();
+        first.closeQuietly();
+
+        //then
+        assertEquals(1, registry.size());
+        assertTrue(second.getClient().getLowLevelClient().isRunning());
+
+        second.closeQuietly();
+        assertEquals(0, registry.size());
+        assertFalse(second.getClient().getLowLevelClient().isRunning());
+    }
+}
@@ -17,18 +17,30 @@
 package com.github.dariobalinzo.elastic;
 
 import com.github.dariobalinzo.TestContainersContext;
+import com.github.dariobalinzo.elastic.response.Backlog;
 import com.github.dariobalinzo.elastic.response.Cursor;
+import com.github.dariobalinzo.elastic.response.CursorRange;
 import com.github.dariobalinzo.elastic.response.PageResult;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.xcontent.XContentType;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
+/**
+ * scanCursorValues (deletion reconciliation) is not covered: it sorts on the _shard_doc tiebreaker of the point in
+ * time, available from Elasticsearch 7.12, and the test container runs 7.11.1.
+ */
 public class ElasticRepositoryTest extends TestContainersContext {
 
-
     @Test
     public void shouldFetchDataFromElastic() throws IOException, InterruptedException {
         deleteTestIndex();
@@ -131,4 +143,257 @@ public class ElasticRepositoryTest extends TestContainersContext {
         });
     }
 
+    @Test
+    public void shouldProbeForNewDocuments() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        refreshIndex();
+
+        assertTrue(repository.hasDocumentsAfter(TEST_INDEX, Cursor.empty()));
+        assertTrue(repository.hasDocumentsAfter(TEST_INDEX, new Cursor("111")));
+        assertFalse(repository.hasDocumentsAfter(TEST_INDEX, new Cursor("112")));
+
+        assertTrue(secondarySortRepo.hasDocumentsAfter(TEST_INDEX, new Cursor("111", null)));
+        assertFalse(secondarySortRepo.hasDocumentsAfter(TEST_INDEX, new Cursor("112", "Test")));
+    }
+
+    @Test
+    public void shouldFetchDataInLeanMode() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        refreshIndex();
+
+        ElasticRepository leanRepository = new ElasticRepository(connection, CURSOR_FIELD);
+        leanRepository.setPageSize(TEST_PAGE_SIZE);
+        leanRepository.setLeanFetch(true);
+
+        PageResult firstPage = leanRepository.searchAfter(TEST_INDEX, Cursor.empty());
+        assertEquals(3, firstPage.getDocuments().size());
+        assertEquals(TEST_INDEX, firstPage.getDocuments().get(0).get("es-index"));
+        assertNotNull(firstPage.getDocuments().get(0).get("es-id"));
+
+        PageResult secondPage = leanRepository.searchAfter(TEST_INDEX, firstPage.getLastCursor());
+        assertEquals(1, secondPage.getDocuments().size());
+        assertEquals("114", secondPage.getLastCursor().getPrimaryCursor());
+
+        PageResult emptyPage = leanRepository.searchAfter(TEST_INDEX, secondPage.getLastCursor());
+        assertEquals(0, emptyPage.getDocuments().size());
+        assertNull(emptyPage.getLastCursor().getPrimaryCursor());
+    }
+
+    @Test
+    public void shouldFetchDataUsingBinaryResponseFormats() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        refreshIndex();
+
+        for (XContentType format : new XContentType[]{XContentType.SMILE, XContentType.CBOR}) {
+            ElasticRepository binaryRepository = new ElasticRepository(connection, CURSOR_FIELD);
+            binaryRepository.setPageSize(TEST_PAGE_SIZE);
+            binaryRepository.setResponseFormat(format);
+
+            PageResult page = binaryRepository.searchAfter(TEST_INDEX, Cursor.empty());
+            assertEquals(2, page.getDocuments().size());
+            assertEquals("Test", page.getDocuments().get(0).get("fullName"));
+            assertEquals(111, page.getDocuments().get(0).get(CURSOR_FIELD));
+            assertEquals("112", page.getLastCursor().getPrimaryCursor());
+        }
+    }
+
+    @Test
+    public void shouldFetchDataInSeqNoOrder() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(114);
+        insertMockData(113);
+        insertMockData(112);
+        insertMockData(111);
+        refreshIndex();
+
+        Map<Integer, Long> checkpoints = repository.globalCheckpoints(TEST_INDEX);
+        assertEquals(Collections.singletonMap(0, 3L), checkpoints);
+
+        PageResult firstPage = repository.searchAfterSeqNo(TEST_INDEX, 0, Cursor.empty(), 3L);
+        assertEquals(3, firstPage.getDocuments().size());
+        assertEquals(114, firstPage.getDocuments().get(0).get(CURSOR_FIELD));
+        assertEquals(0L, firstPage.getDocuments().get(0).get("es-seq-no"));
+        assertEquals("2", firstPage.getLastCursor().getPrimaryCursor());
+
+        PageResult secondPage = repository.searchAfterSeqNo(TEST_INDEX, 0, firstPage.getLastCursor(), 3L);
+        assertEquals(1, secondPage.getDocuments().size());
+        assertEquals(111, secondPage.getDocuments().get(0).get(CURSOR_FIELD));
+        assertEquals("3", secondPage.getLastCursor().getPrimaryCursor());
+
+        PageResult emptyPage = repository.searchAfterSeqNo(TEST_INDEX, 0, secondPage.getLastCursor(), 3L);
+        assertEquals(0, emptyPage.getDocuments().size());
+        assertEquals("3", emptyPage.getLastCursor().getPrimaryCursor());
+    }
+
+    @Test
+    public void shouldFetchDataUpToUpperBound() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        refreshIndex();
+
+        CursorRange range = repository.cursorRange(TEST_INDEX);
+        assertEquals(111, range.getMin());
+        assertEquals(114, range.getMax());
+        assertEquals("114", range.getMaxValue());
+        assertNull(range.getBoundsFormat());
+
+        PageResult firstWindow = repository.searchAfter(TEST_INDEX, Cursor.empty(), null, "112", range.getBoundsFormat());
+        assertEquals(2, firstWindow.getDocuments().size());
+        assertEquals("112", firstWindow.getLastCursor().getPrimaryCursor());
+
+        PageResult secondWindow = repository.searchAfter(TEST_INDEX, Cursor.empty(), "112", "114", range.getBoundsFormat());
+        assertEquals(2, secondWindow.getDocuments().size());
+        assertEquals("114", secondWindow.getLastCursor().getPrimaryCursor());
+
+        assertNull(repository.cursorRange("non-existing*"));
+    }
+
+    @Test
+    public void shouldEstimateBacklog() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        refreshIndex();
+
+        Backlog all = repository.backlog(TEST_INDEX, Cursor.empty(), 10);
+        assertEquals(4, all.getCount());
+        assertFalse(all.isCapped());
+        assertEquals(114, all.getMaxCursor(), 0);
+
+        Backlog capped = repository.backlog(TEST_INDEX, new Cursor("111"), 2);
+        assertEquals(2, capped.getCount());
+        assertTrue(capped.isCapped());
+        assertEquals(114, capped.getMaxCursor(), 0);
+
+        Backlog caughtUp = repository.backlog(TEST_INDEX, new Cursor("114"), 10);
+        assertEquals(0, caughtUp.getCount());
+        assertTrue(Double.isNaN(caughtUp.getMaxCursor()));
+    }
+
+    @Test
+    public void shouldNotFetchDocumentsInSettleWindow() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        Instant now = Instant.now();
+        for (Instant created : new Instant[]{now.minus(1, ChronoUnit.HOURS), now.minus(1, ChronoUnit.SECONDS)}) {
+            connection.getClient().index(
+                    new IndexRequest(TEST_INDEX).source("created", created.toString()),
+                    RequestOptions.DEFAULT
+            );
+        }
+        refreshIndex();
+
+        ElasticRepository settledRepository = new ElasticRepository(connection, "created");
+        settledRepository.setPageSize(TEST_PAGE_SIZE);
+        settledRepository.setCursorSettleMs(60_000);
+
+        PageResult page = settledRepository.searchAfter(TEST_INDEX, Cursor.empty());
+        assertEquals(1, page.getDocuments().size());
+        assertFalse(settledRepository.hasDocumentsAfter(TEST_INDEX, page.getLastCursor()));
+
+        settledRepository.setCursorSettleMs(0);
+        assertTrue(settledRepository.hasDocumentsAfter(TEST_INDEX, page.getLastCursor()));
+    }
+
+    @Test
+    public void shouldNotLoseDocumentsSharingCursorAtPageBoundary() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(111);
+        insertMockData(111);
+        insertMockData(111);
+        insertMockData(112);
+        refreshIndex();
+
+        ElasticRepository dedupRepository = new ElasticRepository(connection, CURSOR_FIELD);
+        dedupRepository.setPageSize(TEST_PAGE_SIZE);
+        dedupRepository.setMaxBoundaryIds(10);
+
+        PageResult firstPage = dedupRepository.searchAfter(TEST_INDEX, Cursor.empty());
+        assertEquals(3, firstPage.getDocuments().size());
+        assertEquals("111", firstPage.getLastCursor().getPrimaryCursor());
+        assertEquals(3, firstPage.getLastCursor().getBoundaryIds().size());
+        assertTrue(dedupRepository.hasDocumentsAfter(TEST_INDEX, firstPage.getLastCursor()));
+
+        PageResult secondPage = dedupRepository.searchAfter(TEST_INDEX, firstPage.getLastCursor());
+        assertEquals(2, secondPage.getDocuments().size());
+        assertEquals(111, secondPage.getDocuments().get(0).get(CURSOR_FIELD));
+        assertEquals("112", secondPage.getLastCursor().getPrimaryCursor());
+        assertEquals(1, secondPage.getLastCursor().getBoundaryIds().size());
+
+        PageResult emptyPage = dedupRepository.searchAfter(TEST_INDEX, secondPage.getLastCursor());
+        assertEquals(0, emptyPage.getDocuments().size());
+        assertFalse(dedupRepository.hasDocumentsAfter(TEST_INDEX, secondPage.getLastCursor()));
+    }
+
+    @Test
+    public void shouldFetchDocValuesProjection() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        refreshIndex();
+
+        ElasticRepository docValuesRepository = new ElasticRepository(connection, CURSOR_FIELD);
+        docValuesRepository.setPageSize(TEST_PAGE_SIZE);
+        docValuesRepository.setDocValueFields(Arrays.asList("age", "fullName.keyword", NESTED_CURSOR_FIELD));
+
+        PageResult page = docValuesRepository.searchAfter(TEST_INDEX, Cursor.empty());
+        assertEquals(2, page.getDocuments().size());
+        Map<String, Object> document = page.getDocuments().get(0);
+        assertEquals(111, document.get(CURSOR_FIELD));
+        assertEquals(10, document.get("age"));
+        assertEquals("Test", document.get("fullName"));
+        assertEquals(Collections.singletonMap(CURSOR_FIELD, 111), document.get(NESTED_OBJECT));
+        assertNull(document.get("avroField"));
+        assertEquals("112", page.getLastCursor().getPrimaryCursor());
+    }
+
+    @Test
+    public void shouldFetchOnlyDocumentsMatchingQueryFilter() throws IOException, InterruptedException {
+        deleteTestIndex();
+
+        insertMockData(111, "customerA", TEST_INDEX);
+        insertMockData(112, "customerB", TEST_INDEX);
+        insertMockData(113, "customerA", TEST_INDEX);
+        insertMockData(114, "customerB", TEST_INDEX);
+        refreshIndex();
+
+        ElasticRepository filteredRepository = new ElasticRepository(connection, CURSOR_FIELD, SECONDARY_CURSOR_FIELD);
+        filteredRepository.setPageSize(TEST_PAGE_SIZE);
+        filteredRepository.setQueryFilter("{\"term\": {\"fullName.keyword\": \"customerA\"}}");
+
+        PageResult page = filteredRepository.searchAfterWithSecondarySort(TEST_INDEX, Cursor.empty());
+        assertEquals(2, page.getDocuments().size());
+        assertEquals("113", page.getLastCursor().getPrimaryCursor());
+        assertFalse(filteredRepository.hasDocumentsAfter(TEST_INDEX, page.getLastCursor()));
+
+        ElasticRepository filteredPrimaryRepository = new ElasticRepository(connection, CURSOR_FIELD);
+        filteredPrimaryRepository.setPageSize(TEST_PAGE_SIZE);
+        filteredPrimaryRepository.setQueryFilter("{\"term\": {\"fullName.keyword\": \"customerB\"}}");
+        PageResult primaryPage = filteredPrimaryRepository.searchAfter(TEST_INDEX, new Cursor("112"));
+        assertEquals(1, primaryPage.getDocuments().size());
+        assertEquals("114", primaryPage.getLastCursor().getPrimaryCursor());
+    }
+
 }
@@ -21,9 +21,11 @@ import com.github.dariobalinzo.ElasticSourceConnector;
 import com.github.dariobalinzo.TestContainersContext;
 import com.github.dariobalinzo.task.ElasticSourceTaskConfig;
 
+import org.apache.kafka.connect.source.ExactlyOnceSupport;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -74,4 +76,24 @@ public class ElasticSourceConnectorTest extends TestContainersContext {
         assertEquals(maxTasks, taskList.size());
         connector.stop();
     }
+
+    @Test
+    public void shouldSupportExactlyOnceOnlyWithDeterministicReplay() {
+        //given
+        ElasticSourceConnector connector = new ElasticSourceConnector();
+        Map<String, String> cursorOnly = getConf();
+        cursorOnly.remove(ElasticSourceTaskConfig.SECONDARY_INCREMENTING_FIELD_NAME_CONFIG);
+        Map<String, String> boundaryIds = new HashMap<>(cursorOnly);
+        boundaryIds.put(ElasticSourceTaskConfig.CURSOR_DEDUP_MAX_IDS_CONFIG, "100");
+        Map<String, String> secondarySort = new HashMap<>(cursorOnly);
+        secondarySort.put(ElasticSourceTaskConfig.SECONDARY_INCREMENTING_FIELD_NAME_CONFIG, SECONDARY_CURSOR_FIELD);
+        Map<String, String> reconciliation = new HashMap<>(secondarySort);
+        reconciliation.put(ElasticSourceTaskConfig.RECONCILIATION_INTERVAL_CONFIG, "60000");
+
+        //then
+        assertEquals(ExactlyOnceSupport.UNSUPPORTED, connector.exactlyOnceSupport(cursorOnly));
+        assertEquals(ExactlyOnceSupport.SUPPORTED, connector.exactlyOnceSupport(boundaryIds));
+        assertEquals(ExactlyOnceSupport.SUPPORTED, connector.exactlyOnceSupport(secondarySort));
+        assertEquals(ExactlyOnceSupport.UNSUPPORTED, connector.exactlyOnceSupport(reconciliation));
+    }
 }
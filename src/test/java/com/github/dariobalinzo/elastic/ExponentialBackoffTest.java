@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExponentialBackoffTest {
+
+    @Test
+    public void shouldGrowBackoffExponentiallyUpToMax() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1_000);
+        assertEquals(100, backoff.ceilingMs(0));
+        assertEquals(200, backoff.ceilingMs(1));
+        assertEquals(800, backoff.ceilingMs(3));
+        assertEquals(1_000, backoff.ceilingMs(4));
+        assertEquals(1_000, backoff.ceilingMs(100));
+        for (int i = 0; i < 100; ++i) {
+            long delay = backoff.delayMs(2);
+            assertTrue(delay >= 0 && delay <= 400);
+        }
+    }
+}
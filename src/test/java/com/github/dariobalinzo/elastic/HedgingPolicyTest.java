@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.elastic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HedgingPolicyTest {
+
+    @Test
+    public void shouldNotHedgeWithoutEnoughSamples() {
+        HedgingPolicy policy = new HedgingPolicy(95, 10);
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES - 1; ++i) {
+            policy.record(100);
+        }
+        assertEquals(-1, policy.hedgeDelayMs());
+
+        policy.record(100);
+        assertEquals(100, policy.hedgeDelayMs());
+    }
+
+    @Test
+    public void shouldUsePercentileOfRecentLatencies() {
+        //given
+        HedgingPolicy policy = new HedgingPolicy(90, 10);
+
+        //when
+        for (int i = 1; i <= 100; ++i) {
+            policy.record(i);
+        }
+
+        //then
+        assertEquals(90, policy.hedgeDelayMs());
+    }
+
+    @Test
+    public void shouldForgetOldLatencies() {
+        //given
+        HedgingPolicy policy = new HedgingPolicy(50, 0);
+        for (int i = 0; i < HedgingPolicy.WINDOW_SIZE; ++i) {
+            policy.record(1000);
+        }
+
+        //when
+        for (int i = 0; i < HedgingPolicy.WINDOW_SIZE; ++i) {
+            policy.record(20);
+        }
+
+        //then
+        assertEquals(20, policy.hedgeDelayMs());
+    }
+
+    @Test
+    public void shouldApplyMinimumDelay() {
+        HedgingPolicy policy = new HedgingPolicy(99, 50);
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES; ++i) {
+            policy.record(5);
+        }
+        assertEquals(50, policy.hedgeDelayMs());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.schema;
+
+import com.github.dariobalinzo.corpus.DocumentGenerator;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Property tests over generated documents: any document of the corpus converts to a valid struct, with the same
+ * fields and values whether it is converted as generated or as parsed back from a search response.
+ */
+public class GeneratedDocumentConversionTest {
+    private static final long[] SEEDS = {1, 2, 3, 42, 2018};
+    private static final int DOCUMENTS_PER_SEED = 200;
+
+    @Test
+    public void shouldConvertGeneratedDocuments() {
+        for (FieldNameConverter nameConverter : new FieldNameConverter[]{new AvroName(), new NopNameConverter()}) {
+            SchemaConverter schemaConverter = new SchemaConverter(nameConverter);
+            StructConverter structConverter = new StructConverter(nameConverter);
+            for (long seed : SEEDS) {
+                DocumentGenerator generator = generator(seed);
+                for (Map<String, Object> document : generator.documentsAfter(0, DOCUMENTS_PER_SEED)) {
+                    //when
+                    Schema schema = schemaConverter.convert(document, "test");
+                    Struct struct = structConverter.convert(document, schema);
+
+                    //then
+                    struct.validate();
+                    assertEquals(document.get(DocumentGenerator.CURSOR_FIELD), struct.get(DocumentGenerator.CURSOR_FIELD));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldConvertSearchResponseSourcesLikeGeneratedDocuments() throws IOException {
+        SchemaConverter schemaConverter = new SchemaConverter(new AvroName());
+        StructConverter structConverter = new StructConverter(new AvroName());
+        for (long seed : SEEDS) {
+            //given
+            DocumentGenerator generator = generator(seed);
+            List<Map<String, Object>> documents = generator.documentsAfter(0, DOCUMENTS_PER_SEED);
+            SearchHit[] hits = parse(generator.searchResponse("test", documents)).getHits().getHits();
+
+            for (int i = 0; i < documents.size(); i++) {
+                //when
+                Map<String, Object> source = hits[i].getSourceAsMap();
+                Struct expected = structConverter.convert(documents.get(i), schemaConverter.convert(documents.get(i), "test"));
+                Struct actual = structConverter.convert(source, schemaConverter.convert(source, "test"));
+
+                //then
+                assertEquals(fieldsOf(expected), fieldsOf(actual));
+            }
+        }
+    }
+
+    //the parsed sources are hash maps: the same fields and values, not in the same order
+    private Object fieldsOf(Object value) {
+        if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            Map<String, Object> fields = new TreeMap<>();
+            for (Field field : struct.schema().fields()) {
+                fields.put(field.name(), fieldsOf(struct.get(field)));
+            }
+            return fields;
+        } else if (value instanceof List) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                items.add(fieldsOf(item));
+            }
+            return items;
+        }
+        return value;
+    }
+
+    private DocumentGenerator generator(long seed) {
+        return DocumentGenerator.builder(seed)
+                .withFieldCount(1, 15)
+                .withMaxDepth(3)
+                .withNesting(0.1, 0.05, 0.1)
+                .withListSize(0, 4)
+                .withTypeDriftRate(0.2)
+                .withExoticNameRate(0.3)
+                .build();
+    }
+
+    private SearchResponse parse(String body) throws IOException {
+        try (XContentParser parser = XContentType.JSON.xContent()
+                .createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, body)) {
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import com.github.dariobalinzo.elastic.response.CursorRange;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BackfillWindowTest {
+
+    @Test
+    public void shouldSplitRangeInContiguousWindows() {
+        //given
+        CursorRange range = new CursorRange(100, 200);
+
+        //when
+        List<BackfillWindow> windows = BackfillWindow.split(range, 4);
+
+        //then
+        assertEquals(4, windows.size());
+        assertNull(windows.get(0).getLowerBound());
+        assertNull(windows.get(0).getCursor().getPrimaryCursor());
+        assertEquals("125", windows.get(0).getUpperBound());
+        assertEquals("125", windows.get(1).getLowerBound());
+        assertNull(windows.get(1).getCursor().getPrimaryCursor());
+        assertEquals("150", windows.get(1).getUpperBound());
+        assertEquals("175", windows.get(3).getLowerBound());
+        assertEquals("200", windows.get(3).getUpperBound());
+        assertFalse(windows.get(3).isDone());
+    }
+
+    @Test
+    public void shouldSearchDateBoundsAsEpochMillis() {
+        assertNull(new CursorRange(100, 200).getBoundsFormat());
+        assertNull(new CursorRange(100, 200, "200").getBoundsFormat());
+        assertEquals(CursorRange.EPOCH_MILLIS, new CursorRange(0, 86_400_000, "1970/01/02").getBoundsFormat());
+    }
+
+    @Test
+    public void shouldEndLastWindowAtMaxWhenRangeIsNarrow() {
+        //given
+        CursorRange range = new CursorRange(100, 102);
+
+        //when
+        List<BackfillWindow> windows = BackfillWindow.split(range, 4);
+
+        //then
+        assertEquals("100", windows.get(0).getUpperBound());
+        assertEquals("100", windows.get(3).getLowerBound());
+        assertEquals("102", windows.get(3).getUpperBound());
+    }
+}
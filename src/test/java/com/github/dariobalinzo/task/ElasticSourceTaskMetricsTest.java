@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import com.github.dariobalinzo.elastic.response.Backlog;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Metrics;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.junit.Assert.*;
+
+public class ElasticSourceTaskMetricsTest {
+
+    @Test
+    public void shouldCountRecordsPerIndexAndPerTask() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+
+        //when
+        taskMetrics.recordRecords("index1", 3);
+        taskMetrics.recordRecords("index1", 2);
+        taskMetrics.recordRecords("index2", 4);
+
+        //then
+        assertEquals(5, taskMetrics.recordsSent("index1"));
+        assertEquals(4, taskMetrics.recordsSent("index2"));
+        assertEquals(0, taskMetrics.recordsSent("index3"));
+        assertEquals(9.0, value(metrics, "records-total", ElasticSourceTaskMetrics.TASK_GROUP), 0);
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldTrackSearchesAndRetries() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+
+        //when
+        taskMetrics.onSearch(10);
+        taskMetrics.onSearch(30);
+        taskMetrics.onResponseBytes(1000);
+        taskMetrics.onRetry();
+
+        //then
+        assertEquals(20.0, value(metrics, "search-latency-avg", ElasticSourceTaskMetrics.TASK_GROUP), 0);
+        assertEquals(30.0, value(metrics, "search-latency-max", ElasticSourceTaskMetrics.TASK_GROUP), 0);
+        assertEquals(1000.0, value(metrics, "response-bytes-total", ElasticSourceTaskMetrics.TASK_GROUP), 0);
+        assertEquals(1.0, value(metrics, "retries-total", ElasticSourceTaskMetrics.TASK_GROUP), 0);
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldComputeCursorLagOnlyForDates() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+
+        //when
+        taskMetrics.recordCursor("dates", OffsetDateTime.now().minusMinutes(1).toString());
+        taskMetrics.recordCursor("ids", "customerA");
+        taskMetrics.recordCursor("numbers", String.valueOf(System.currentTimeMillis() - 60_000));
+
+        //then
+        double lag = indexValue(metrics, "cursor-lag-ms", "dates");
+        assertTrue(lag >= 60_000 && lag < 120_000);
+        assertTrue(Double.isNaN(indexValue(metrics, "cursor-lag-ms", "ids")));
+        assertTrue(Double.isNaN(indexValue(metrics, "cursor-lag-ms", "numbers")));
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldExposeLastBacklogEstimate() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+
+        //when
+        taskMetrics.recordBacklog("index1", new Backlog(10, false, 114));
+        taskMetrics.recordBacklog("index1", new Backlog(3, false, 117));
+
+        //then
+        assertEquals(3.0, indexValue(metrics, "backlog-records", "index1"), 0);
+        assertEquals(117.0, indexValue(metrics, "backlog-max-cursor", "index1"), 0);
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldExposeStageTimings() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+
+        //when
+        taskMetrics.onPage(1_000, 2_000_000, 500_000);
+        taskMetrics.onPage(1_000, 4_000_000, 500_000);
+        taskMetrics.recordStage(PollStage.FILTER, 10_000);
+
+        //then
+        assertEquals(2.0, stageValue(metrics, "samples-total", PollStage.NETWORK_WAIT), 0);
+        assertEquals(3000.0, stageValue(metrics, "time-avg-us", PollStage.NETWORK_WAIT), 0);
+        assertEquals(4000.0, stageValue(metrics, "time-max-us", PollStage.NETWORK_WAIT), 0);
+        assertEquals(500.0, stageValue(metrics, "time-p99-us", PollStage.DECODE), 500 * 0.04);
+        assertEquals(0.0, stageValue(metrics, "samples-total", PollStage.SCHEMA), 0);
+        assertTrue(Double.isNaN(stageValue(metrics, "time-p50-us", PollStage.SCHEMA)));
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldSummarizeStageTimingsSinceThePreviousSummary() {
+        //given
+        Metrics metrics = new Metrics();
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test");
+        taskMetrics.recordStage(PollStage.FILTER, 10_000);
+        taskMetrics.stageSummary();
+
+        //when
+        taskMetrics.recordStage(PollStage.FILTER, 20_000);
+        taskMetrics.recordStage(PollStage.FILTER, 20_000);
+        String summary = taskMetrics.stageSummary();
+
+        //then
+        assertTrue(summary, summary.contains("filter 2 20.0/"));
+        assertTrue(summary, summary.contains("schema 0,"));
+        assertEquals(3.0, stageValue(metrics, "samples-total", PollStage.FILTER), 0);
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldTagMetricsWithTheTaskIndex() {
+        //given
+        Metrics metrics = new Metrics();
+
+        //when
+        ElasticSourceTaskMetrics taskMetrics = new ElasticSourceTaskMetrics(metrics, "test", "2");
+        taskMetrics.recordRecords("index1", 1);
+
+        //then
+        for (MetricName metricName : metrics.metrics().keySet()) {
+            if (metricName.group().equals(ElasticSourceTaskMetrics.INDEX_GROUP)) {
+                assertEquals("2", metricName.tags().get("task"));
+            }
+        }
+
+        taskMetrics.close();
+    }
+
+    @Test
+    public void shouldParseCursorTimestamps() {
+        assertNull(ElasticSourceTaskMetrics.parseTimestamp("1000"));
+        assertEquals(Long.valueOf(1000L), ElasticSourceTaskMetrics.parseTimestamp("1970-01-01T00:00:01Z"));
+        assertEquals(Long.valueOf(1000L), ElasticSourceTaskMetrics.parseTimestamp("1970-01-01T01:00:01+01:00"));
+        assertNull(ElasticSourceTaskMetrics.parseTimestamp("customerA"));
+        assertNull(ElasticSourceTaskMetrics.parseTimestamp(null));
+    }
+
+    private double value(Metrics metrics, String name, String group) {
+        for (MetricName metricName : metrics.metrics().keySet()) {
+            if (metricName.name().equals(name) && metricName.group().equals(group)) {
+                return ((Number) metrics.metrics().get(metricName).metricValue()).doubleValue();
+            }
+        }
+        throw new AssertionError("metric not found: " + name);
+    }
+
+    private double indexValue(Metrics metrics, String name, String index) {
+        for (MetricName metricName : metrics.metrics().keySet()) {
+            if (metricName.name().equals(name) && index.equals(metricName.tags().get("index"))) {
+                return ((Number) metrics.metrics().get(metricName).metricValue()).doubleValue();
+            }
+        }
+        throw new AssertionError("metric not found: " + name);
+    }
+
+    private double stageValue(Metrics metrics, String name, PollStage stage) {
+        for (MetricName metricName : metrics.metrics().keySet()) {
+            if (metricName.name().equals(name) && stage.getMetricName().equals(metricName.tags().get("stage"))) {
+                return ((Number) metrics.metrics().get(metricName).metricValue()).doubleValue();
+            }
+        }
+        throw new AssertionError("metric not found: " + name);
+    }
+}
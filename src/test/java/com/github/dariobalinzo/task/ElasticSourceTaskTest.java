@@ -22,6 +22,7 @@ import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.source.TransactionContext;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -504,5 +505,148 @@ public class ElasticSourceTaskTest extends TestContainersContext {
         task.stop();
     }
 
+    @Test
+    public void shouldBackfillInWindowsAndThenReadIncrementally() throws IOException, InterruptedException {
+        //given
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        refreshIndex();
+
+        ElasticSourceTask task = new ElasticSourceTask();
+        Mockito.when(context.offsetStorageReader()).thenReturn(MockOffsetFactory.empty());
+        task.initialize(context);
+        Map<String, String> conf = getConf();
+        conf.put(ElasticSourceConnectorConfig.BACKFILL_WINDOWS_CONFIG, String.valueOf(2));
+
+        //when (both windows are read in the same poll)
+        task.start(conf);
+        List<SourceRecord> poll1 = task.poll();
+        assertEquals(4, poll1.size());
+        assertEquals("0", poll1.get(0).sourcePartition().get("backfill_window"));
+        assertEquals("111", poll1.get(0).sourceOffset().get("position"));
+        assertEquals("111", poll1.get(0).sourceOffset().get("backfill_min"));
+        assertEquals("114", poll1.get(0).sourceOffset().get("backfill_max"));
+        assertEquals("1", poll1.get(2).sourcePartition().get("backfill_window"));
+        assertEquals(113L, ((Struct) poll1.get(2).value()).get("ts"));
+
+        List<SourceRecord> poll2 = task.poll();
+        assertTrue(poll2.isEmpty());
+
+        //then (reading incrementally after the backfill)
+        insertMockData(115);
+        refreshIndex();
+        List<SourceRecord> poll3 = task.poll();
+        assertEquals(1, poll3.size());
+        assertEquals("{index=source_index}", poll3.get(0).sourcePartition().toString());
+        assertEquals("{position=115}", poll3.get(0).sourceOffset().toString());
+
+        task.stop();
+    }
+
+    @Test
+    public void shouldEmitOffsetsAtPageBoundaries() throws IOException, InterruptedException {
+        //given
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        refreshIndex();
+
+        ElasticSourceTask task = new ElasticSourceTask();
+        Mockito.when(context.offsetStorageReader()).thenReturn(MockOffsetFactory.empty());
+        task.initialize(context);
+        Map<String, String> conf = getConf();
+        conf.put(ElasticSourceConnectorConfig.OFFSETS_PER_PAGE_CONFIG, "true");
+
+        //when
+        task.start(conf);
+        List<SourceRecord> poll1 = task.poll();
+        List<SourceRecord> poll2 = task.poll();
+
+        //then
+        assertEquals("{position=null}", poll1.get(0).sourceOffset().toString());
+        assertEquals("{position=112}", poll1.get(1).sourceOffset().toString());
+        assertEquals("{position=112}", poll2.get(0).sourceOffset().toString());
+        assertEquals(TEST_INDEX + "_113", poll2.get(0).key());
+        assertEquals("{position=114}", poll2.get(1).sourceOffset().toString());
+
+        task.stop();
+    }
+
+    @Test
+    public void shouldCommitATransactionForEachPage() throws IOException, InterruptedException {
+        //given
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        refreshIndex();
+
+        ElasticSourceTask task = new ElasticSourceTask();
+        TransactionContext transactionContext = Mockito.mock(TransactionContext.class);
+        Mockito.when(context.offsetStorageReader()).thenReturn(MockOffsetFactory.empty());
+        Mockito.when(context.transactionContext()).thenReturn(transactionContext);
+        task.initialize(context);
+
+        //when
+        task.start(getConf());
+        List<SourceRecord> poll1 = task.poll();
+        List<SourceRecord> poll2 = task.poll();
+
+        //then
+        assertEquals(2, poll1.size());
+        assertEquals(1, poll2.size());
+        Mockito.verify(transactionContext).commitTransaction(poll1.get(1));
+        Mockito.verify(transactionContext).commitTransaction(poll2.get(0));
+        Mockito.verifyNoMoreInteractions(transactionContext);
+
+        task.stop();
+    }
+
+    @Test
+    public void shouldReadExtraPagesWhileTheIndexIsBehind() throws IOException, InterruptedException {
+        //given
+        deleteTestIndex();
+
+        insertMockData(111);
+        insertMockData(112);
+        insertMockData(113);
+        insertMockData(114);
+        insertMockData(115);
+        refreshIndex();
+
+        ElasticSourceTask task = new ElasticSourceTask();
+        Mockito.when(context.offsetStorageReader()).thenReturn(MockOffsetFactory.empty());
+        task.initialize(context);
+        Map<String, String> conf = getConf();
+        conf.put(ElasticSourceConnectorConfig.BACKLOG_INTERVAL_CONFIG, "60000");
+
+        //when (the backlog of 5 documents is read in pages of 2 in the same poll)
+        task.start(conf);
+        List<SourceRecord> poll1 = task.poll();
+
+        //then
+        assertEquals(5, poll1.size());
+        assertEquals("{position=115}", poll1.get(4).sourceOffset().toString());
+
+        //when (the backlog is consumed: one page per poll)
+        insertMockData(116);
+        insertMockData(117);
+        insertMockData(118);
+        refreshIndex();
+        List<SourceRecord> poll2 = task.poll();
+
+        //then
+        assertEquals(2, poll2.size());
+
+        task.stop();
+    }
 
 }
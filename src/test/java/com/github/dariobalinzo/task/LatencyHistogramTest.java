@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldKeepValuesWithinThreePercent() {
+        for (long value = 0; value < 1L << 41; value = value * 3 / 2 + 1) {
+            long bucketValue = LatencyHistogram.bucketValue(LatencyHistogram.bucket(value));
+            assertTrue(value + " -> " + bucketValue, Math.abs(bucketValue - value) <= value * 0.03);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket((1L << 41) - 1));
+    }
+
+    @Test
+    public void shouldComputePercentilesOfAnInterval() {
+        //given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1_000_000L);
+        }
+        LatencyHistogram.Snapshot interval = histogram.snapshot().since(first);
+
+        //then
+        assertEquals(50_000, first.percentile(50), 50_000 * 0.03);
+        assertEquals(99_000, first.percentile(99), 99_000 * 0.03);
+        assertEquals(50_500, first.mean(), 0);
+        assertEquals(10, interval.getCount());
+        assertEquals(1_000_000, interval.percentile(50), 1_000_000 * 0.03);
+        assertEquals(1_000_000, interval.mean(), 0);
+        assertTrue(Double.isNaN(LatencyHistogram.Snapshot.EMPTY.percentile(50)));
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import com.github.dariobalinzo.elastic.response.Cursor;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.dariobalinzo.task.ElasticSourceTask.POSITION;
+import static com.github.dariobalinzo.task.ElasticSourceTask.POSITION_IDS;
+import static org.junit.Assert.*;
+
+public class OffsetSerializerTest {
+    private static final Map<String, String> PARTITION = Collections.singletonMap("index", "index1");
+
+    private final OffsetSerializer serializer = new OffsetSerializer();
+
+    @Test
+    public void shouldRoundTripBoundaryIdsContainingCommas() {
+        //given
+        Cursor cursor = Cursor.withBoundaryIds("100", Arrays.asList("a,b", "c", "[d]"));
+
+        //when
+        Map<String, String> offset = serializer.toMapOffset(cursor);
+        Cursor read = serializer.toCursor(PARTITION, new HashMap<>(offset));
+
+        //then
+        assertEquals("[\"a,b\",\"c\",\"[d]\"]", offset.get(POSITION_IDS));
+        assertEquals("100", read.getPrimaryCursor());
+        assertEquals(Arrays.asList("a,b", "c", "[d]"), read.getBoundaryIds());
+    }
+
+    @Test
+    public void shouldRejectMalformedBoundaryIds() {
+        //given
+        Map<String, Object> offset = new HashMap<>();
+        offset.put(POSITION, "100");
+        offset.put(POSITION_IDS, "a,b");
+
+        //when
+        try {
+            serializer.toCursor(PARTITION, offset);
+            fail("malformed ids must not be read");
+        } catch (ConnectException e) {
+            //then
+            assertTrue(e.getMessage(), e.getMessage().contains("index1"));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgressReporterTest {
+
+    @Test
+    public void shouldReportOnceForEachInterval() {
+        //given
+        ProgressReporter reporter = new ProgressReporter(1000, 0);
+        reporter.recordPage("index2", 3, "30");
+        reporter.recordPage("index1", 10, "100");
+        reporter.recordPage("index1", 5, "105");
+        reporter.recordPoll(18);
+        reporter.recordPoll(0);
+
+        //when
+        String early = reporter.report(999);
+        String report = reporter.report(1500);
+        String next = reporter.report(2000);
+
+        //then
+        assertNull(early);
+        assertEquals("progress interval_ms=1500 polls=2 idle_polls=1 records=18" +
+                " | index=index1 records=15 pages=2 cursor=105" +
+                " | index=index2 records=3 pages=1 cursor=30", report);
+        assertNull(next);
+    }
+
+    @Test
+    public void shouldResetTheCountersOfTheInterval() {
+        //given
+        ProgressReporter reporter = new ProgressReporter(1000, 0);
+        reporter.recordPage("index1", 10, "100");
+        reporter.recordPoll(10);
+        reporter.report(1000);
+
+        //when
+        reporter.recordPage("index1", 0, null);
+        reporter.recordPoll(0);
+        String report = reporter.report(2000);
+
+        //then
+        assertEquals("progress interval_ms=1000 polls=1 idle_polls=1 records=0", report);
+    }
+
+    @Test
+    public void shouldNotReportWhenDisabled() {
+        //given
+        ProgressReporter reporter = new ProgressReporter(0, 0);
+        reporter.recordPage("index1", 10, "100");
+        reporter.recordPoll(10);
+
+        //when
+        String report = reporter.report(Long.MAX_VALUE);
+
+        //then
+        assertNull(report);
+    }
+}
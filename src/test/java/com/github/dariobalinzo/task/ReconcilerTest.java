@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ReconcilerTest {
+    private static final String INDEX = "index1";
+
+    private Path directory;
+    private List<Integer> cursors = Collections.emptyList();
+    private Reconciler reconciler;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("reconciler");
+        Reconciler.Scanner scanner = (index, consumer) -> {
+            assertEquals(INDEX, index);
+            for (Integer cursor : cursors) {
+                consumer.accept(Collections.singletonMap("ts", cursor));
+            }
+        };
+        reconciler = new Reconciler(scanner, directory.resolve("connector1"), "topic_", 2);
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldOnlyRecordKeysWithoutPreviousSnapshot() throws Exception {
+        //given
+        indexHolds(1, 2, 3);
+
+        //when
+        List<String> removed = reconcile();
+        reconciler.promote(INDEX);
+
+        //then
+        assertTrue(removed.isEmpty());
+        assertTrue(Files.exists(directory.resolve("connector1").resolve("topic_" + INDEX + ".keys")));
+    }
+
+    @Test
+    public void shouldStreamKeysRemovedSinceThePromotedSnapshot() throws Exception {
+        //given
+        indexHolds(1, 2, 3, 4);
+        reconcile();
+        reconciler.promote(INDEX);
+        indexHolds(2, 4, 5);
+
+        //when
+        List<String> removed = reconcile();
+
+        //then
+        assertEquals(Arrays.asList("1", "3"), removed);
+    }
+
+    @Test
+    public void shouldCompareWithTheLastPromotedSnapshotOnly() throws Exception {
+        //given
+        indexHolds(1, 2, 3);
+        reconcile();
+        reconciler.promote(INDEX);
+        indexHolds(2, 3);
+        reconcile();
+        //the tombstones of 1 were not delivered: no promotion
+
+        //when
+        indexHolds(3);
+        List<String> removed = reconcile();
+
+        //then
+        assertEquals(Arrays.asList("1", "2"), removed);
+    }
+
+    private void indexHolds(Integer... cursors) {
+        this.cursors = Arrays.asList(cursors);
+    }
+
+    private List<String> reconcile() throws Exception {
+        List<String> removed = new ArrayList<>();
+        reconciler.reconcile(INDEX, document -> String.valueOf(document.get("ts")), removed::add);
+        return removed;
+    }
+}
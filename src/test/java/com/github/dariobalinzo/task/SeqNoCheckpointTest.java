@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeqNoCheckpointTest {
+
+    @Test
+    public void shouldExposeCheckpointOnlyAfterVisibilityDelay() {
+        //given
+        SeqNoCheckpoint checkpoint = new SeqNoCheckpoint(1_000);
+
+        //when
+        long initial = checkpoint.update(10, 0);
+        long beforeDelay = checkpoint.update(10, 999);
+        long afterDelay = checkpoint.update(10, 1_000);
+
+        //then
+        assertEquals(-1, initial);
+        assertEquals(-1, beforeDelay);
+        assertEquals(10, afterDelay);
+    }
+
+    @Test
+    public void shouldNotRestartDelayWhenCheckpointKeepsMoving() {
+        //given
+        SeqNoCheckpoint checkpoint = new SeqNoCheckpoint(1_000);
+
+        //when
+        checkpoint.update(10, 0);
+        checkpoint.update(20, 500);
+        long firstBound = checkpoint.update(30, 1_000);
+        long secondBound = checkpoint.update(40, 1_500);
+        long thirdBound = checkpoint.update(50, 2_000);
+
+        //then
+        assertEquals(10, firstBound);
+        assertEquals(10, secondBound);
+        assertEquals(30, thirdBound);
+    }
+
+    @Test
+    public void shouldExposeCheckpointImmediatelyWithoutDelay() {
+        //given
+        SeqNoCheckpoint checkpoint = new SeqNoCheckpoint(0);
+
+        //when
+        long bound = checkpoint.update(5, 0);
+
+        //then
+        assertEquals(5, bound);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.dariobalinzo.task;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortedKeyFileTest {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("sorted-key-file");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void shouldStreamRemovedKeysAcrossSpilledRuns() throws IOException {
+        //given
+        Path previous = build("previous", Arrays.asList("d", "a", "c", "b", "e", "a"));
+        Path current = build("current", Arrays.asList("e", "f", "b", "d"));
+
+        //when
+        List<String> removed = new ArrayList<>();
+        SortedKeyFile.diff(previous, current, removed::add);
+
+        //then
+        assertEquals(Arrays.asList("a", "c"), removed);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void shouldRemoveAllKeysWhenCurrentSetIsEmpty() throws IOException {
+        //given
+        Path previous = build("previous", Arrays.asList("b", "a"));
+        Path current = build("current", Collections.emptyList());
+
+        //when
+        List<String> removed = new ArrayList<>();
+        SortedKeyFile.diff(previous, current, removed::add);
+
+        //then
+        assertEquals(Arrays.asList("a", "b"), removed);
+    }
+
+    @Test
+    public void shouldMergeRunsWithBoundedFanIn() throws IOException {
+        //given
+        List<String> keys = Arrays.asList("g", "c", "a", "f", "c", "b", "e", "d", "a");
+        Path merged;
+        try (SortedKeyFile.Builder builder = new SortedKeyFile.Builder(directory.resolve("merged"), 1, 2)) {
+            for (String key : keys) {
+                builder.add(key);
+            }
+            merged = builder.build();
+        }
+        Path empty = build("empty", Collections.emptyList());
+
+        //when
+        List<String> all = new ArrayList<>();
+        SortedKeyFile.diff(merged, empty, all::add);
+
+        //then
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f", "g"), all);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    private Path build(String name, List<String> keys) throws IOException {
+        try (SortedKeyFile.Builder builder = new SortedKeyFile.Builder(directory.resolve(name), 2)) {
+            for (String key : keys) {
+                builder.add(key);
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2018 Dario Balinzo (dariobalinzo@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.dariobalinzo.task;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TombstoneQueueTest {
+    private final List<String> promoted = new ArrayList<>();
+    private final Reconciler reconciler = new Reconciler(null, Paths.get("unused"), "topic", 2) {
+        @Override
+        void promote(String index) {
+            promoted.add(index);
+        }
+    };
+
+    @Test
+    public void shouldNotPromoteWhileTombstonesArePolledButNotAcked() throws InterruptedException {
+        //given
+        TombstoneQueue queue = new TombstoneQueue(10);
+        queue.put("index1", tombstone("index1_1"));
+        queue.put("index1", tombstone("index1_2"));
+        queue.passCompleted("index1");
+
+        //when (polled, the producer sends them asynchronously)
+        List<SourceRecord> poll1 = new ArrayList<>();
+        int drained = queue.drainTo(poll1);
+        queue.drainTo(new ArrayList<>());
+        queue.acked("index1", true);
+        queue.promoteAcked(reconciler);
+
+        //then
+        assertEquals(2, drained);
+        assertEquals("index1_1", poll1.get(0).key());
+        assertNull(poll1.get(0).value());
+        assertTrue(promoted.isEmpty());
+        assertTrue(queue.isPending("index1"));
+
+        //when (the last tombstone is acked)
+        queue.acked("index1", true);
+        queue.promoteAcked(reconciler);
+
+        //then
+        assertEquals(Collections.singletonList("index1"), promoted);
+        assertFalse(queue.isPending("index1"));
+    }
+
+    @Test
+    public void shouldNotPromoteAnIndexWhosePassIsRunning() throws InterruptedException {
+        //given
+        TombstoneQueue queue = new TombstoneQueue(10);
+        queue.put("index1", tombstone("index1_1"));
+        queue.passCompleted("index1");
+        queue.put("index2", tombstone("index2_1"));
+
+        //when
+        queue.drainTo(new ArrayList<>());
+        queue.acked("index1", true);
+        queue.acked("index2", true);
+        queue.promoteAcked(reconciler);
+
+        //then
+        assertEquals(Collections.singletonList("index1"), promoted);
+        assertTrue(queue.isPending("index2"));
+    }
+
+    @Test
+    public void shouldDiscardThePassWhenATombstoneIsNotSent() throws InterruptedException {
+        //given
+        TombstoneQueue queue = new TombstoneQueue(10);
+        queue.put("index1", tombstone("index1_1"));
+        queue.put("index1", tombstone("index1_2"));
+        queue.passCompleted("index1");
+        queue.passAborted("index2");
+
+        //when
+        queue.drainTo(new ArrayList<>());
+        queue.acked("index1", false);
+        queue.acked("index1", true);
+        queue.promoteAcked(reconciler);
+
+        //then
+        assertTrue(promoted.isEmpty());
+        assertFalse(queue.isPending("index1"));
+        assertFalse(queue.isPending("index2"));
+    }
+
+    private SourceRecord tombstone(String key) {
+        return new SourceRecord(Collections.singletonMap("index", key.split("_")[0]), Collections.emptyMap(),
+                "topic", Schema.STRING_SCHEMA, key, null, null);
+    }
+}